@@ -0,0 +1,48 @@
+package pl.karcisze.properties;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Benchmark of TrialAppPropertiesManager.loadProps over bundled classpath:resources/ sources. Bundled resources have
+ * fixed size, so it has no parameters and is measured once.
+ *
+ * @author Krzysztof Arciszewski
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoadClasspathBenchmark {
+
+	private final TrialAppPropertiesManager manager = new TrialAppPropertiesManager();
+	private final List<String> classpathUris = new ArrayList<String>();
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		SyntheticConfig.quietLogging();
+		classpathUris.add("classpath:resources/jdbc.properties");
+		classpathUris.add("classpath:resources/aws.json");
+		classpathUris.add("classpath:resources/config.json");
+	}
+
+	@Benchmark
+	public AppProperties loadClasspath() {
+		return manager.loadProps(classpathUris);
+	}
+}
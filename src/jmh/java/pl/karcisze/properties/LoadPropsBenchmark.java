@@ -0,0 +1,88 @@
+package pl.karcisze.properties;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/*
+ * Benchmark of TrialAppPropertiesManager.loadProps over file:// and http:// sources of synthetic configuration.
+ * http:// sources are served by a local HttpServer. classpath:resources/ sources are benchmarked by
+ * LoadClasspathBenchmark, as their size does not depend on parameters of this one.
+ *
+ * @author Krzysztof Arciszewski
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoadPropsBenchmark {
+
+	@Param({ "10", "1000", "100000", "1000000" })
+	public int keys;
+
+	@Param({ ".properties", ".json" })
+	public String format;
+
+	private final TrialAppPropertiesManager manager = new TrialAppPropertiesManager();
+	private final List<String> fileUris = new ArrayList<String>();
+	private final List<String> httpUris = new ArrayList<String>();
+	private HttpServer server;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		SyntheticConfig.quietLogging();
+		final byte[] content = ".json".equals(format) ? SyntheticConfig.json(keys) : SyntheticConfig.properties(keys);
+		fileUris.add(SyntheticConfig.writeTempFile(content, format));
+
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/config" + format, new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				exchange.sendResponseHeaders(200, content.length);
+				OutputStream os = exchange.getResponseBody();
+				os.write(content);
+				os.close();
+			}
+		});
+		server.start();
+		httpUris.add("http://127.0.0.1:" + server.getAddress().getPort() + "/config" + format);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		server.stop(0);
+	}
+
+	@Benchmark
+	public AppProperties loadFile() {
+		return manager.loadProps(fileUris);
+	}
+
+	@Benchmark
+	public AppProperties loadHttp() {
+		return manager.loadProps(httpUris);
+	}
+}
@@ -0,0 +1,80 @@
+package pl.karcisze.properties;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Benchmark of get latency of TrialAppProperties and CompiledAppProperties, for known keys (hits) and unknown keys (misses).
+ * Keys are looked up in their equivalent, upper case and '_' separated, form, as callers usually do.
+ *
+ * @author Krzysztof Arciszewski
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LookupBenchmark {
+
+	private static final int LOOKUP_KEYS = 1024;
+
+	@Param({ "10", "1000", "100000", "1000000" })
+	public int keys;
+
+	private TrialAppProperties trialAppProperties;
+	private CompiledAppProperties compiledAppProperties;
+	private final String[] hits = new String[LOOKUP_KEYS];
+	private final String[] misses = new String[LOOKUP_KEYS];
+	private int next = 0;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		SyntheticConfig.quietLogging();
+		trialAppProperties = SyntheticConfig.load(keys);
+		compiledAppProperties = trialAppProperties.freeze();
+		for (int i = 0; i < LOOKUP_KEYS; i++) {
+			int k = (int) ((i * 2654435761L) % keys);
+			hits[i] = SyntheticConfig.key(k).toUpperCase().replace('.', '_');
+			misses[i] = SyntheticConfig.key(keys + k).toUpperCase().replace('.', '_');
+		}
+	}
+
+	private int nextIndex() {
+		next = (next + 1) & (LOOKUP_KEYS - 1);
+		return next;
+	}
+
+	@Benchmark
+	public Object getHit() {
+		return trialAppProperties.get(hits[nextIndex()]);
+	}
+
+	@Benchmark
+	public Object getMiss() {
+		return trialAppProperties.get(misses[nextIndex()]);
+	}
+
+	@Benchmark
+	public Object getHitCompiled() {
+		return compiledAppProperties.get(hits[nextIndex()]);
+	}
+
+	@Benchmark
+	public Object getMissCompiled() {
+		return compiledAppProperties.get(misses[nextIndex()]);
+	}
+}
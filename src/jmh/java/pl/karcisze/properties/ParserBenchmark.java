@@ -0,0 +1,70 @@
+package pl.karcisze.properties;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Benchmark of parse throughput of PropertyFileParserJSON and PropertyFileParserProperty (streamed and mapped).
+ * Parsers put Properties into PropertySourceStaging, so type conversion and merging are not measured.
+ *
+ * @author Krzysztof Arciszewski
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParserBenchmark {
+
+	@Param({ "10", "1000", "100000", "1000000" })
+	public int keys;
+
+	private byte[] json;
+	private byte[] properties;
+	private File propertiesFile;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		SyntheticConfig.quietLogging();
+		json = SyntheticConfig.json(keys);
+		properties = SyntheticConfig.properties(keys);
+		propertiesFile = new File(SyntheticConfig.writeTempFile(properties, ".properties").substring("file://".length()));
+	}
+
+	@Benchmark
+	public PropertySourceStaging parseJSON() {
+		PropertySourceStaging staging = new PropertySourceStaging("benchmark.json");
+		new PropertyFileParserJSON().parseInto(new ByteArrayInputStream(json), staging, null);
+		return staging;
+	}
+
+	@Benchmark
+	public PropertySourceStaging parseProperties() {
+		PropertySourceStaging staging = new PropertySourceStaging("benchmark.properties");
+		new PropertyFileParserProperty().parseInto(new ByteArrayInputStream(properties), staging, null);
+		return staging;
+	}
+
+	@Benchmark
+	public PropertySourceStaging parsePropertiesMapped() throws IOException {
+		PropertySourceStaging staging = new PropertySourceStaging("benchmark.properties");
+		new PropertyFileParserPropertyMapped().parseFileInto(propertiesFile, staging, null);
+		return staging;
+	}
+}
@@ -0,0 +1,62 @@
+package pl.karcisze.properties;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/*
+ * Benchmark of TrialAppPropertiesManager.printProperties. Output is consumed by Blackhole, so formatting and
+ * PrintStream overhead are measured, not the device.
+ *
+ * @author Krzysztof Arciszewski
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PrintPropertiesBenchmark {
+
+	@Param({ "10", "1000", "100000", "1000000" })
+	public int keys;
+
+	private final TrialAppPropertiesManager manager = new TrialAppPropertiesManager();
+	private TrialAppProperties trialAppProperties;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		SyntheticConfig.quietLogging();
+		trialAppProperties = SyntheticConfig.load(keys);
+	}
+
+	@Benchmark
+	public void printProperties(final Blackhole blackhole) {
+		manager.printProperties(trialAppProperties, new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+				blackhole.consume(b);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+				blackhole.consume(b);
+			}
+		}));
+	}
+}
@@ -0,0 +1,53 @@
+package pl.karcisze.properties;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Benchmark of TrialAppProperties.getMissingProperties and isValid, as called by health checks
+ *
+ * @author Krzysztof Arciszewski
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ValidityBenchmark {
+
+	@Param({ "10", "1000", "100000", "1000000" })
+	public int keys;
+
+	private TrialAppProperties trialAppProperties;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		SyntheticConfig.quietLogging();
+		trialAppProperties = SyntheticConfig.load(keys);
+	}
+
+	@Benchmark
+	public List<String> getMissingProperties() {
+		return trialAppProperties.getMissingProperties();
+	}
+
+	@Benchmark
+	public boolean isValid() {
+		return trialAppProperties.isValid();
+	}
+}
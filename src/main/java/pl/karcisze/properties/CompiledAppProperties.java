@@ -0,0 +1,483 @@
+package pl.karcisze.properties;
+
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Read-only snapshot of AppProperties, created by TrialAppProperties.freeze().
+ *
+ * Properties are laid out in flat arrays and addressed by a minimal perfect hash of their canonical keys
+ * (hash and displace: every key hashes to a bucket, and each bucket holds the displacement that sends all its keys
+ * to distinct slots). Lookup is a fixed number of hash computations and array reads, followed by a single
+ * key comparison, so it does not allocate.
+ * All fields are final and never modified after construction, so instances can be shared between threads without locks.
+ *
+ * Values of java.lang.Long, java.lang.Integer, java.lang.Double and java.lang.Boolean Properties are additionally
+ * kept in primitive slots, so typed accessors read them without casting and unboxing.
+ *
+ * @author Krzysztof Arciszewski
+ */
+public final class CompiledAppProperties implements TypedAppProperties {
+
+	public final static Logger LOGGER = Logger.getLogger("AppProperties");
+
+	// average number of keys per bucket
+	private static final int BUCKET_SIZE = 3;
+	// number of displacements tried for a bucket before the whole table is rebuilt with more buckets
+	private static final int DISPLACEMENT_LIMIT = 1 << 16;
+	private static final int BUILD_ATTEMPTS = 8;
+	private static final long DISPLACEMENT_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+	// primitive types of slots
+	private static final byte PRIMITIVE_NONE = 0;
+	private static final byte PRIMITIVE_LONG = 1;
+	private static final byte PRIMITIVE_DOUBLE = 2;
+	private static final byte PRIMITIVE_BOOLEAN = 3;
+
+	// arrays indexed by slot
+	private final String[] keys;
+	private final long[] hashes;
+	private final Property[] values;
+	// displacement per bucket. Negative value -(slot+1) addresses a slot of single-key bucket directly
+	private final int[] displacements;
+	// slots in sorted, case insensitive, key order
+	private final int[] sortedSlots;
+	// primitive type declared for key of slot
+	private final byte[] primitiveTypes;
+	// primitive value of slot: long value, raw bits of double value, or 1/0 for boolean value
+	private final long[] primitiveValues;
+	// slots of primitive type that have a value set
+	private final BitSet primitiveSet;
+
+	// index of abstraction class of slot, or -1 if key of slot is not declared
+	private final int[] closureOfSlot;
+	// number of keys declared in abstraction class, and number of its keys registered and set
+	private final int[] closureSizes;
+	private final int[] closureSetCounts;
+
+	private final List<String> knownProperties;
+	private final List<String> missingProperties;
+
+	/*
+	 * @param properties sorted Properties to be compiled. Keys must be unique in their canonical form.
+	 *                   Abstraction classes of keys are taken from PropertyCompletionHandler.
+	 */
+	CompiledAppProperties(SortedMap<String, Property> properties) {
+		this(properties.keySet().toArray(new String[properties.size()]),
+				properties.values().toArray(new Property[properties.size()]), compileClosures(properties.keySet()));
+	}
+
+	private CompiledAppProperties(String[] sortedKeys, Property[] sortedValues, int[][] closures) {
+		this(sortedKeys, sortedValues, closures[0], closures[1]);
+	}
+
+	/*
+	 * @param sortedKeys keys in sorted, case insensitive, order. Keys must be unique in their canonical form.
+	 * @param sortedValues Properties of keys, in the same order as keys
+	 * @param closureOfKey index of abstraction class of every key, in the same order as keys, or -1 for a key
+	 *                     that is not declared
+	 * @param closureSizes number of keys declared in each of abstraction classes
+	 */
+	CompiledAppProperties(String[] sortedKeys, Property[] sortedValues, int[] closureOfKey, int[] closureSizes) {
+		int n = sortedKeys.length;
+		long[] sortedHashes = new long[n];
+		List<String> known = new ArrayList<String>(n);
+		List<String> missing = new ArrayList<String>();
+		closureSetCounts = new int[closureSizes.length];
+		for (int i = 0; i < n; i++) {
+			String key = sortedKeys[i];
+			sortedHashes[i] = PropertyKeyIndex.canonicalHash64(key);
+			known.add(key);
+			if (Property.PROPERTY_EMPTYVALUE.equals(sortedValues[i].getValue())) {
+				missing.add(key);
+			} else if (closureOfKey[i] >= 0) {
+				closureSetCounts[closureOfKey[i]]++;
+			}
+		}
+		knownProperties = Collections.unmodifiableList(known);
+		missingProperties = Collections.unmodifiableList(missing);
+		this.closureSizes = closureSizes;
+		closureOfSlot = new int[n];
+
+		keys = new String[n];
+		hashes = new long[n];
+		values = new Property[n];
+		sortedSlots = new int[n];
+		primitiveTypes = new byte[n];
+		primitiveValues = new long[n];
+		primitiveSet = new BitSet(n);
+
+		int bucketCount = Math.max(1, (n + BUCKET_SIZE - 1) / BUCKET_SIZE);
+		int[] slotOfKey = null;
+		int[] _displacements = null;
+		for (int attempt = 0; attempt < BUILD_ATTEMPTS && slotOfKey == null; attempt++) {
+			_displacements = new int[bucketCount];
+			slotOfKey = buildPerfectHash(sortedHashes, bucketCount, _displacements);
+			if (slotOfKey == null) {
+				LOGGER.log(Level.INFO, "perfect hash of " + n + " keys not found with " + bucketCount + " buckets - retrying");
+				bucketCount *= 2;
+			}
+		}
+		if (slotOfKey == null) {
+			throw new AppPropertiesException("perfect hash can not be built for " + n + " keys");
+		}
+		displacements = _displacements;
+		for (int k = 0; k < n; k++) {
+			int slot = slotOfKey[k];
+			keys[slot] = sortedKeys[k];
+			hashes[slot] = sortedHashes[k];
+			values[slot] = sortedValues[k];
+			closureOfSlot[slot] = closureOfKey[k];
+			sortedSlots[k] = slot;
+			compilePrimitive(slot);
+		}
+	}
+
+	/*
+	 * Finds abstraction classes of keys, as declared in PropertyCompletionHandler.
+	 *
+	 * @param sortedKeys keys in sorted, case insensitive, order
+	 * @return two arrays: index of abstraction class of every key, or -1 for a key that is not declared, and number
+	 *         of keys declared in each of abstraction classes
+	 */
+	static int[][] compileClosures(Collection<String> sortedKeys) {
+		PropertyCompletionHandler handler = PropertyCompletionHandler.getPropertyManager();
+		Map<TreeSet<String>, Integer> indexes = new IdentityHashMap<TreeSet<String>, Integer>();
+		List<Integer> sizes = new ArrayList<Integer>();
+		int[] closureOfKey = new int[sortedKeys.size()];
+		int i = 0;
+		for (String key : sortedKeys) {
+			String declared = handler.getDeclaredKey(key);
+			TreeSet<String> closure = declared == null ? null : handler.getPropertyClosure(declared);
+			if (closure == null) {
+				closureOfKey[i++] = -1;
+				continue;
+			}
+			Integer index = indexes.get(closure);
+			if (index == null) {
+				index = sizes.size();
+				indexes.put(closure, index);
+				sizes.add(closure.size());
+			}
+			closureOfKey[i++] = index;
+		}
+		int[] closureSizes = new int[sizes.size()];
+		for (int c = 0; c < closureSizes.length; c++) {
+			closureSizes[c] = sizes.get(c);
+		}
+		return new int[][] { closureOfKey, closureSizes };
+	}
+
+	/*
+	 * Fills primitive slot with value of Property in the slot, according to type declared for its key.
+	 */
+	private void compilePrimitive(int slot) {
+		String type = PropertyCompletionHandler.getPropertyManager().getPropertyType(keys[slot]);
+		Object value = values[slot].getValue();
+		if ("java.lang.Long".equals(type) || "java.lang.Integer".equals(type)) {
+			primitiveTypes[slot] = PRIMITIVE_LONG;
+			if (value instanceof Long || value instanceof Integer) {
+				primitiveValues[slot] = ((Number) value).longValue();
+				primitiveSet.set(slot);
+			}
+		} else if ("java.lang.Double".equals(type)) {
+			primitiveTypes[slot] = PRIMITIVE_DOUBLE;
+			if (value instanceof Double) {
+				primitiveValues[slot] = Double.doubleToRawLongBits((Double) value);
+				primitiveSet.set(slot);
+			}
+		} else if ("java.lang.Boolean".equals(type)) {
+			primitiveTypes[slot] = PRIMITIVE_BOOLEAN;
+			if (value instanceof Boolean) {
+				primitiveValues[slot] = ((Boolean) value) ? 1 : 0;
+				primitiveSet.set(slot);
+			}
+		}
+	}
+
+	/*
+	 * Places keys into slots, bucket after bucket, starting from the largest buckets.
+	 *
+	 * @param keyHashes 64 bit hashes of keys
+	 * @param bucketCount number of buckets
+	 * @param _displacements array to be filled with displacements of buckets
+	 * @return slot of every key, or null if some bucket can not be placed
+	 */
+	private static int[] buildPerfectHash(long[] keyHashes, int bucketCount, int[] _displacements) {
+		int n = keyHashes.length;
+		int[] slotOfKey = new int[n];
+		if (n == 0) {
+			return slotOfKey;
+		}
+		// keys grouped by bucket: bucketStart[b]..bucketStart[b+1] range of bucketKeys
+		int[] bucketStart = new int[bucketCount + 1];
+		for (int k = 0; k < n; k++) {
+			bucketStart[bucket(keyHashes[k], bucketCount) + 1]++;
+		}
+		int maxBucketSize = 0;
+		for (int b = 0; b < bucketCount; b++) {
+			maxBucketSize = Math.max(maxBucketSize, bucketStart[b + 1]);
+			bucketStart[b + 1] += bucketStart[b];
+		}
+		int[] bucketKeys = new int[n];
+		int[] fill = Arrays.copyOf(bucketStart, bucketCount);
+		for (int k = 0; k < n; k++) {
+			bucketKeys[fill[bucket(keyHashes[k], bucketCount)]++] = k;
+		}
+		// buckets ordered by size, largest first
+		int[] bucketsBySize = new int[bucketCount];
+		int[] sizeStart = new int[maxBucketSize + 2];
+		for (int b = 0; b < bucketCount; b++) {
+			sizeStart[maxBucketSize - (bucketStart[b + 1] - bucketStart[b]) + 1]++;
+		}
+		for (int s = 0; s <= maxBucketSize; s++) {
+			sizeStart[s + 1] += sizeStart[s];
+		}
+		for (int b = 0; b < bucketCount; b++) {
+			bucketsBySize[sizeStart[maxBucketSize - (bucketStart[b + 1] - bucketStart[b])]++] = b;
+		}
+
+		boolean[] taken = new boolean[n];
+		int[] candidate = new int[maxBucketSize];
+		int nextFree = 0;
+		for (int b : bucketsBySize) {
+			int from = bucketStart[b];
+			int size = bucketStart[b + 1] - from;
+			if (size == 0) {
+				break;
+			}
+			if (size == 1) {
+				while (taken[nextFree]) {
+					nextFree++;
+				}
+				taken[nextFree] = true;
+				slotOfKey[bucketKeys[from]] = nextFree;
+				_displacements[b] = -nextFree - 1;
+				continue;
+			}
+			boolean placed = false;
+			for (int d = 0; d < DISPLACEMENT_LIMIT && !placed; d++) {
+				placed = true;
+				for (int j = 0; j < size && placed; j++) {
+					int slot = slot(keyHashes[bucketKeys[from + j]], d, n);
+					if (taken[slot]) {
+						placed = false;
+					}
+					for (int m = 0; m < j && placed; m++) {
+						if (candidate[m] == slot) {
+							placed = false;
+						}
+					}
+					candidate[j] = slot;
+				}
+				if (placed) {
+					for (int j = 0; j < size; j++) {
+						taken[candidate[j]] = true;
+						slotOfKey[bucketKeys[from + j]] = candidate[j];
+					}
+					_displacements[b] = d;
+				}
+			}
+			if (!placed) {
+				return null;
+			}
+		}
+		return slotOfKey;
+	}
+
+	private static int bucket(long hash, int bucketCount) {
+		return reduce((int) (hash >>> 32), bucketCount);
+	}
+
+	private static int slot(long hash, int displacement, int n) {
+		long h = hash + displacement * DISPLACEMENT_MULTIPLIER;
+		h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+		h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return reduce((int) (h ^ (h >>> 33)), n);
+	}
+
+	/*
+	 * @return value in range [0, n) - multiply and shift range reduction of 32 bit hash
+	 */
+	private static int reduce(int hash, int n) {
+		return (int) (((hash & 0xffffffffL) * n) >>> 32);
+	}
+
+	/*
+	 * @param key Property key, in any of its equivalent forms
+	 * @return slot of the key, or -1 if the key is not known
+	 */
+	int slotOf(String key) {
+		int n = keys.length;
+		if (n == 0) {
+			return -1;
+		}
+		long h = PropertyKeyIndex.canonicalHash64(key);
+		int d = displacements[bucket(h, displacements.length)];
+		int slot = d < 0 ? -d - 1 : slot(h, d, n);
+		if (hashes[slot] == h && PropertyKeyIndex.canonicalEquals(keys[slot], key)) {
+			return slot;
+		}
+		return -1;
+	}
+
+	/*
+	 * @param key Property key, in any of its equivalent forms
+	 * @param primitiveType primitive type expected for the key
+	 * @return slot of the key, or -1 if the key is not known or its value is not set
+	 */
+	private int primitiveSlotOf(String key, byte primitiveType) {
+		if (key == null) {
+			throw new InvalidParameterException("key paramter is null");
+		}
+		int slot = slotOf(key);
+		if (slot < 0) {
+			return -1;
+		}
+		if (primitiveTypes[slot] != primitiveType) {
+			throw new AppPropertiesException("property:["+key+"] is of type:["
+					+ PropertyCompletionHandler.getPropertyManager().getPropertyType(keys[slot]) + "]");
+		}
+		return primitiveSet.get(slot) ? slot : -1;
+	}
+
+	@Override
+	public long getLong(String key, long defaultValue) {
+		int slot = primitiveSlotOf(key, PRIMITIVE_LONG);
+		return slot < 0 ? defaultValue : primitiveValues[slot];
+	}
+
+	@Override
+	public int getInt(String key, int defaultValue) {
+		int slot = primitiveSlotOf(key, PRIMITIVE_LONG);
+		if (slot < 0) {
+			return defaultValue;
+		}
+		long value = primitiveValues[slot];
+		if (value != (int) value) {
+			throw new AppPropertiesException("property:["+key+"] value:["+value+"] does not fit into int");
+		}
+		return (int) value;
+	}
+
+	@Override
+	public double getDouble(String key, double defaultValue) {
+		if (key == null) {
+			throw new InvalidParameterException("key paramter is null");
+		}
+		int slot = slotOf(key);
+		if (slot >= 0 && primitiveTypes[slot] == PRIMITIVE_LONG) {
+			return primitiveSet.get(slot) ? primitiveValues[slot] : defaultValue;
+		}
+		slot = primitiveSlotOf(key, PRIMITIVE_DOUBLE);
+		return slot < 0 ? defaultValue : Double.longBitsToDouble(primitiveValues[slot]);
+	}
+
+	@Override
+	public boolean getBoolean(String key, boolean defaultValue) {
+		int slot = primitiveSlotOf(key, PRIMITIVE_BOOLEAN);
+		return slot < 0 ? defaultValue : primitiveValues[slot] != 0;
+	}
+
+	/*
+	 * @param key Property key, in any of its equivalent forms
+	 * @return true if all Properties in abstraction class of a given key are registered and set. Key that is not
+	 *         declared forms abstraction class of its own.
+	 */
+	public boolean isClosureComplete(String key) {
+		if (key == null) {
+			throw new InvalidParameterException("key paramter is null");
+		}
+		int slot = slotOf(key);
+		if (slot < 0) {
+			return false;
+		}
+		int closure = closureOfSlot[slot];
+		if (closure < 0) {
+			return !Property.PROPERTY_EMPTYVALUE.equals(values[slot].getValue());
+		}
+		return closureSetCounts[closure] == closureSizes[closure];
+	}
+
+	/*
+	 * @return Properties in sorted, case insensitive, order by key name
+	 */
+	List<Property> sortedProperties() {
+		Property[] sorted = new Property[sortedSlots.length];
+		for (int i = 0; i < sortedSlots.length; i++) {
+			sorted[i] = values[sortedSlots[i]];
+		}
+		return Arrays.asList(sorted);
+	}
+
+	/*
+	 * @return an immutable list of properties that are unset either because they are missing or because they have the wrong type
+	 */
+	@Override
+	public List<String> getMissingProperties() {
+		return missingProperties;
+	}
+
+	/*
+	 * @return an immutable list of all known keys
+	 */
+	@Override
+	public List<String> getKnownProperties() {
+		return knownProperties;
+	}
+
+	/*
+	 * @return true if all registered Properties have non empty value - false otherwise
+	 */
+	@Override
+	public boolean isValid() {
+		return missingProperties.isEmpty();
+	}
+
+	/*
+	 * Snapshot is read-only, so it can not be cleared
+	 */
+	@Override
+	public void clear() {
+		throw new UnsupportedOperationException("compiled AppProperties are read-only");
+	}
+
+	/*
+	 * Method to access Properties by their key.
+	 *
+	 * @param key of Property to be returned.
+	 * @return Property of a given key, or null if such Property has not been registered.
+	 */
+	@Override
+	public Object get(String key) {
+		if (key == null) {
+			throw new InvalidParameterException("key paramter is null");
+		}
+		int slot = slotOf(key);
+		return slot < 0 ? null : values[slot];
+	}
+
+	/*
+	 * @return String representation of instance of this class. It is the same as of TrialAppProperties it was compiled from.
+	 */
+	@Override
+	public String toString() {
+		StringBuffer sb = new StringBuffer();
+		for (int slot : sortedSlots) {
+			sb.append(values[slot]);
+			sb.append(";");
+		}
+		return sb.toString();
+	}
+}
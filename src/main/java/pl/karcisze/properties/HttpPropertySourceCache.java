@@ -0,0 +1,250 @@
+package pl.karcisze.properties;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.InvalidParameterException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Cache of http:// property sources. Body of each source is stored on local disk together with its ETag and
+ * Last-Modified validators, and later loads send If-None-Match / If-Modified-Since conditional requests.
+ * When server answers 304 Not Modified, Properties parsed previously from the source are reused without parsing again.
+ * Body stored on disk survives restarts - after a restart it is parsed once, on the first 304 answer.
+ * Requests are sent with HttpPropertySourceFetcher, so they are compressed, retried and, if enabled, hedged.
+ *
+ * This is supporting class for TrialAppPropertiesManager.
+ *
+ * @author Krzysztof Arciszewski
+ */
+public class HttpPropertySourceCache {
+
+	public final static Logger LOGGER = Logger.getLogger("AppProperties");
+
+	public static final int CONNECT_TIMEOUT_DEFAULT = HttpPropertySourceFetcher.CONNECT_TIMEOUT_DEFAULT;
+	public static final int READ_TIMEOUT_DEFAULT = HttpPropertySourceFetcher.READ_TIMEOUT_DEFAULT;
+
+	private static final String META_URI = "uri";
+	private static final String META_ETAG = "etag";
+	private static final String META_LAST_MODIFIED = "lastModified";
+
+	private final File directory;
+	private final HttpPropertySourceFetcher fetcher;
+
+	// sources parsed by this instance, by URI
+	private final ConcurrentMap<String, CachedSource> parsed = new ConcurrentHashMap<String, CachedSource>();
+
+	/*
+	 * Entry of parsed source with validators it was received with
+	 */
+	private static class CachedSource {
+		final String etag;
+		final String lastModified;
+		final PropertySourceStaging staging;
+
+		CachedSource(String etag, String lastModified, PropertySourceStaging staging) {
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.staging = staging;
+		}
+	}
+
+	/*
+	 * @param directory directory to store bodies of sources in. It is created if it does not exist.
+	 */
+	public HttpPropertySourceCache(File directory) {
+		this(directory, CONNECT_TIMEOUT_DEFAULT, READ_TIMEOUT_DEFAULT);
+	}
+
+	/*
+	 * @param directory directory to store bodies of sources in. It is created if it does not exist.
+	 * @param connectTimeout connect timeout in milliseconds
+	 * @param readTimeout read timeout in milliseconds
+	 */
+	public HttpPropertySourceCache(File directory, int connectTimeout, int readTimeout) {
+		this(directory, new HttpPropertySourceFetcher(connectTimeout, readTimeout));
+	}
+
+	/*
+	 * @param directory directory to store bodies of sources in. It is created if it does not exist.
+	 * @param fetcher fetcher to send requests with
+	 */
+	public HttpPropertySourceCache(File directory, HttpPropertySourceFetcher fetcher) {
+		if(directory==null){
+			throw new InvalidParameterException("directory paramter is null");
+		}
+		if(fetcher==null){
+			throw new InvalidParameterException("fetcher paramter is null");
+		}
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new AppPropertiesException("cache directory can not be created:["+directory+"]");
+		}
+		this.directory = directory;
+		this.fetcher = fetcher;
+	}
+
+	/*
+	 * Loads source given by URI of staging. Conditional request is sent if the source has been stored before.
+	 *
+	 * @param staging empty staging for the source
+	 * @param parser parser of the source, called back with staging as its sink only if the source has to be parsed
+	 * @return staging with Properties of the source - either staging passed as parameter, or staging reused
+	 *         from previous load if the source has not been modified
+	 */
+	public PropertySourceStaging load(PropertySourceStaging staging, PropertyFileParser parser) {
+		String propUri = staging.getPropUri();
+		File bodyFile = new File(directory, fileName(propUri) + ".body");
+		File metaFile = new File(directory, fileName(propUri) + ".meta");
+		Properties meta = readMeta(metaFile, propUri);
+		String etag = meta.getProperty(META_ETAG);
+		String lastModified = meta.getProperty(META_LAST_MODIFIED);
+
+		// conditions are sent only if there is a stored body to fall back to - otherwise 304 could not be served
+		boolean stored = bodyFile.isFile();
+		Map<String, String> requestHeaders = new HashMap<String, String>();
+		if (stored && etag != null) {
+			requestHeaders.put("If-None-Match", etag);
+		}
+		if (stored && lastModified != null) {
+			requestHeaders.put("If-Modified-Since", lastModified);
+		}
+		HttpPropertySourceFetcher.Response response = fetcher.fetch(propUri, requestHeaders);
+		try {
+			int status = response.getStatus();
+			if (status == HttpURLConnection.HTTP_NOT_MODIFIED && stored) {
+				CachedSource cached = parsed.get(propUri);
+				if (cached != null && equal(cached.etag, etag) && equal(cached.lastModified, lastModified)) {
+					LOGGER.log(Level.INFO, "URI:["+propUri+"] not modified - reusing parsed Properties");
+					return cached.staging;
+				}
+				LOGGER.log(Level.INFO, "URI:["+propUri+"] not modified - parsing stored body");
+				parser.parseInto(new ByteArrayInputStream(readFile(bodyFile)), staging, null);
+				parsed.put(propUri, new CachedSource(etag, lastModified, staging));
+				return staging;
+			}
+			if (status != HttpURLConnection.HTTP_OK) {
+				throw new AppPropertiesException("unexpected HTTP status:["+status+"] for URI:["+propUri+"]");
+			}
+			byte[] body = response.getBody();
+			parser.parseInto(new ByteArrayInputStream(body), staging, null);
+			String newEtag = response.getHeader("ETag");
+			String newLastModified = response.getHeader("Last-Modified");
+			store(bodyFile, metaFile, propUri, body, newEtag, newLastModified);
+			parsed.put(propUri, new CachedSource(newEtag, newLastModified, staging));
+			return staging;
+		} catch (IOException e) {
+			throw new AppPropertiesException("error loading URI:["+propUri+"]",e);
+		}
+	}
+
+	/*
+	 * Stores body first and validators then, so validators never refer to a body that has not been stored.
+	 * Both files are written to temporary files and moved in place.
+	 */
+	private void store(File bodyFile, File metaFile, String propUri, byte[] body, String etag, String lastModified) throws IOException {
+		metaFile.delete();
+		if (etag == null && lastModified == null) {
+			return;
+		}
+		writeFile(bodyFile, body);
+		Properties meta = new Properties();
+		meta.setProperty(META_URI, propUri);
+		if (etag != null) {
+			meta.setProperty(META_ETAG, etag);
+		}
+		if (lastModified != null) {
+			meta.setProperty(META_LAST_MODIFIED, lastModified);
+		}
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		meta.store(bos, null);
+		writeFile(metaFile, bos.toByteArray());
+	}
+
+	/*
+	 * @return validators stored for the URI, or empty Properties if nothing valid is stored
+	 */
+	private Properties readMeta(File metaFile, String propUri) {
+		Properties meta = new Properties();
+		if (!metaFile.isFile()) {
+			return meta;
+		}
+		try {
+			meta.load(new ByteArrayInputStream(readFile(metaFile)));
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "error reading cache entry:["+metaFile+"] - ignoring it", e);
+			return new Properties();
+		}
+		if (!propUri.equals(meta.getProperty(META_URI))) {
+			return new Properties();
+		}
+		return meta;
+	}
+
+	private static void writeFile(File f, byte[] content) throws IOException {
+		File tmp = new File(f.getPath() + ".tmp");
+		OutputStream os = new FileOutputStream(tmp);
+		try {
+			os.write(content);
+		} finally {
+			os.close();
+		}
+		Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static byte[] readFile(File f) throws IOException {
+		return readStream(new FileInputStream(f));
+	}
+
+	private static byte[] readStream(InputStream is) throws IOException {
+		try {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = is.read(buffer)) > 0) {
+				bos.write(buffer, 0, n);
+			}
+			return bos.toByteArray();
+		} finally {
+			is.close();
+		}
+	}
+
+	/*
+	 * @return name of cache files of the URI - hex encoded SHA-1 of the URI
+	 */
+	private static String fileName(String propUri) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(propUri.getBytes("UTF-8"));
+			StringBuilder sb = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+				sb.append(Character.forDigit(b & 0xf, 16));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new AppPropertiesException("SHA-1 not available",e);
+		} catch (IOException e) {
+			throw new AppPropertiesException("UTF-8 not available",e);
+		}
+	}
+
+	private static boolean equal(String s0, String s1) {
+		return s0 == null ? s1 == null : s0.equals(s1);
+	}
+}
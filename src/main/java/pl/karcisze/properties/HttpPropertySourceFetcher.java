@@ -0,0 +1,482 @@
+package pl.karcisze.properties;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+/*
+ * Fetcher of http:// property sources. Every request has strict connect and read timeouts, asks for gzip compressed
+ * body, which is decompressed while it is read, and is retried with backoff on I/O errors and 5xx answers.
+ * Bodies and error bodies are always read to their end and their streams are closed without disconnecting, so
+ * connections are kept alive and reused by following requests to the same host.
+ *
+ * Optionally, requests are hedged: if an answer does not arrive within a given percentile of latencies of recent
+ * fetches, a second identical request is sent, and whichever answers first is used. The other one is then aborted.
+ * Hedged requests run on a shared pool of daemon threads.
+ *
+ * Bodies are buffered in memory whole before they are handed over, when requests may be retried or hedged: an attempt
+ * may fail, or lose to its hedge, after part of its body has been read, and a parser must never see such a part.
+ * Sources are small, so buffering costs little, but with retries and hedging both disabled bodies are streamed
+ * into BodyHandler while they are read, without buffering.
+ *
+ * Instance is thread safe and is meant to be shared by all loads.
+ *
+ * This is supporting class for TrialAppPropertiesManager and HttpPropertySourceCache.
+ *
+ * @author Krzysztof Arciszewski
+ */
+public class HttpPropertySourceFetcher {
+
+	public final static Logger LOGGER = Logger.getLogger("AppProperties");
+
+	public static final int CONNECT_TIMEOUT_DEFAULT = 5000;
+	public static final int READ_TIMEOUT_DEFAULT = 30000;
+	public static final int MAX_RETRIES_DEFAULT = 1;
+
+	private static final long RETRY_BACKOFF_MILLIS = 100;
+	// number of recent latencies hedge delay is computed from, and number of them needed before it is computed
+	private static final int LATENCY_SAMPLES = 64;
+	private static final int LATENCY_SAMPLES_MIN = 8;
+
+	private final int connectTimeout;
+	private final int readTimeout;
+	private volatile int maxRetries = MAX_RETRIES_DEFAULT;
+	// percentile of latencies after which request is hedged, or 0 if requests are not hedged
+	private volatile double hedgePercentile = 0;
+	private volatile long hedgeDelayMillis = 0;
+
+	// ring of latencies of recent successful requests, in milliseconds
+	private final long[] latencies = new long[LATENCY_SAMPLES];
+	private int latencyCount = 0;
+
+	/*
+	 * Answer to a request, with fully read and decompressed body
+	 */
+	public static class Response {
+
+		private final int status;
+		private final Map<String, String> headers;
+		private final byte[] body;
+
+		Response(int status, Map<String, String> headers, byte[] body) {
+			this.status = status;
+			this.headers = headers;
+			this.body = body;
+		}
+
+		/*
+		 * @return HTTP status code
+		 */
+		public int getStatus() {
+			return status;
+		}
+
+		/*
+		 * @param name case insensitive name of header
+		 * @return value of header, or null if there is no such header
+		 */
+		public String getHeader(String name) {
+			return headers.get(name.toLowerCase());
+		}
+
+		/*
+		 * @return body, empty for answers without body
+		 */
+		public byte[] getBody() {
+			return body;
+		}
+	}
+
+	/*
+	 * Consumer of body of a source
+	 */
+	public interface BodyHandler {
+
+		/*
+		 * @param body decompressed body, to be read by this handler. It is closed by the fetcher.
+		 * @param contentType Content-Type of the answer, or null if it has none
+		 */
+		void handle(InputStream body, String contentType) throws IOException;
+	}
+
+	/*
+	 * Creates fetcher with default timeouts
+	 */
+	public HttpPropertySourceFetcher() {
+		this(CONNECT_TIMEOUT_DEFAULT, READ_TIMEOUT_DEFAULT);
+	}
+
+	/*
+	 * @param connectTimeout connect timeout in milliseconds
+	 * @param readTimeout read timeout in milliseconds - maximal time of waiting for any byte of answer
+	 */
+	public HttpPropertySourceFetcher(int connectTimeout, int readTimeout) {
+		if (connectTimeout <= 0 || readTimeout <= 0) {
+			throw new InvalidParameterException("timeouts have to be positive");
+		}
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
+	}
+
+	/*
+	 * @param maxRetries number of times failed request is repeated, 0 to never repeat it
+	 */
+	public void setMaxRetries(int maxRetries) {
+		if (maxRetries < 0) {
+			throw new InvalidParameterException("maxRetries paramter is negative");
+		}
+		this.maxRetries = maxRetries;
+	}
+
+	/*
+	 * Enables hedged requests. Second request is sent once a given percentile of latencies of recent requests passes
+	 * without an answer. Until enough latencies are known, the second request is sent after a given delay.
+	 *
+	 * @param percentile percentile of latencies, e.g. 0.95, or 0 to disable hedging
+	 * @param initialDelayMillis delay used until enough latencies are known, also the minimal delay
+	 */
+	public void setHedging(double percentile, long initialDelayMillis) {
+		if (percentile < 0 || percentile >= 1) {
+			throw new InvalidParameterException("percentile paramter out of range [0, 1)");
+		}
+		if (initialDelayMillis < 0) {
+			throw new InvalidParameterException("initialDelayMillis paramter is negative");
+		}
+		this.hedgeDelayMillis = initialDelayMillis;
+		this.hedgePercentile = percentile;
+	}
+
+	/*
+	 * Fetches body of a source
+	 *
+	 * @param propUri http:// URI of the source
+	 * @return body of the source
+	 * @throws AppPropertiesException if the source can not be fetched or answer is not 200 OK
+	 */
+	public byte[] fetch(String propUri) {
+		Response response = fetch(propUri, Collections.<String, String>emptyMap());
+		if (response.getStatus() != HttpURLConnection.HTTP_OK) {
+			throw new AppPropertiesException("unexpected HTTP status:["+response.getStatus()+"] for URI:["+propUri+"]");
+		}
+		return response.getBody();
+	}
+
+	/*
+	 * Sends GET request for a source. Answers other than 5xx are returned as they are.
+	 *
+	 * @param propUri http:// URI of the source
+	 * @param requestHeaders additional request headers, e.g. of conditional request
+	 * @return answer to the request
+	 * @throws AppPropertiesException if the request fails all its retries
+	 */
+	public Response fetch(String propUri, Map<String, String> requestHeaders) {
+		if(propUri==null){
+			throw new InvalidParameterException("propUri paramter is null");
+		}
+		if(requestHeaders==null){
+			throw new InvalidParameterException("requestHeaders paramter is null");
+		}
+		URL url = toURL(propUri);
+		AppPropertiesException failure = null;
+		int retries = maxRetries;
+		for (int attempt = 0; attempt <= retries; attempt++) {
+			if (attempt > 0) {
+				backoff(attempt, propUri);
+			}
+			try {
+				Response response = hedgePercentile > 0 ? requestHedged(url, requestHeaders) : new Request(url, requestHeaders).call();
+				if (response.getStatus() < 500) {
+					return response;
+				}
+				failure = new AppPropertiesException("unexpected HTTP status:["+response.getStatus()+"] for URI:["+propUri+"]");
+			} catch (IOException e) {
+				failure = new AppPropertiesException("error fetching URI:["+propUri+"]",e);
+			}
+			LOGGER.log(Level.WARNING, "attempt {0} of fetching URI:[{1}] failed: {2}", new Object[] { attempt + 1, propUri, failure.getMessage() });
+		}
+		throw failure;
+	}
+
+	/*
+	 * Fetches body of a source into a handler. Body is streamed into the handler while it is read if requests are
+	 * neither retried nor hedged; otherwise it is fetched whole first, as by fetch.
+	 *
+	 * @param propUri http:// URI of the source
+	 * @param handler handler of the body
+	 * @throws AppPropertiesException if the source can not be fetched or answer is not 200 OK
+	 */
+	public void fetch(String propUri, BodyHandler handler) {
+		if(propUri==null){
+			throw new InvalidParameterException("propUri paramter is null");
+		}
+		if(handler==null){
+			throw new InvalidParameterException("handler paramter is null");
+		}
+		try {
+			if (maxRetries > 0 || hedgePercentile > 0) {
+				Response response = fetch(propUri, Collections.<String, String>emptyMap());
+				if (response.getStatus() != HttpURLConnection.HTTP_OK) {
+					throw new AppPropertiesException("unexpected HTTP status:["+response.getStatus()+"] for URI:["+propUri+"]");
+				}
+				handler.handle(new ByteArrayInputStream(response.getBody()), response.getHeader("Content-Type"));
+			} else {
+				new Request(toURL(propUri), Collections.<String, String>emptyMap()).stream(handler, propUri);
+			}
+		} catch (IOException e) {
+			throw new AppPropertiesException("error fetching URI:["+propUri+"]",e);
+		}
+	}
+
+	private static URL toURL(String propUri) {
+		try {
+			return new URL(propUri);
+		} catch (MalformedURLException e) {
+			throw new AppPropertiesException("error creating URL from URI:["+propUri+"]",e);
+		}
+	}
+
+	/*
+	 * @return delay after which request is hedged
+	 */
+	long hedgeDelay() {
+		long delay = hedgeDelayMillis;
+		long[] samples;
+		synchronized (latencies) {
+			if (latencyCount < LATENCY_SAMPLES_MIN) {
+				return delay;
+			}
+			samples = Arrays.copyOf(latencies, Math.min(latencyCount, LATENCY_SAMPLES));
+		}
+		Arrays.sort(samples);
+		int i = (int) Math.ceil(hedgePercentile * samples.length) - 1;
+		return Math.max(delay, samples[Math.max(0, i)]);
+	}
+
+	private void recordLatency(long millis) {
+		synchronized (latencies) {
+			latencies[latencyCount % LATENCY_SAMPLES] = millis;
+			latencyCount++;
+		}
+	}
+
+	private Response requestHedged(URL url, Map<String, String> requestHeaders) throws IOException {
+		CompletionService<Response> completion = new ExecutorCompletionService<Response>(HedgeExecutor.POOL);
+		Request primary = new Request(url, requestHeaders);
+		Request hedge = null;
+		Future<Response> primaryFuture = completion.submit(primary);
+		Future<Response> hedgeFuture = null;
+		try {
+			Future<Response> done = completion.poll(hedgeDelay(), TimeUnit.MILLISECONDS);
+			if (done == null) {
+				LOGGER.log(Level.INFO, "no answer within hedge delay - sending second request for URL:[{0}]", url);
+				hedge = new Request(url, requestHeaders);
+				hedgeFuture = completion.submit(hedge);
+				done = completion.take();
+			}
+			try {
+				return done.get();
+			} catch (ExecutionException e) {
+				if (hedgeFuture == null) {
+					throw e;
+				}
+				// one of requests failed, answer of the other one is awaited
+				LOGGER.log(Level.FINE, "one of hedged requests failed for URL:[{0}]", url);
+				return completion.take().get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AppPropertiesException("interrupted while fetching URL:["+url+"]",e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new AppPropertiesException("error fetching URL:["+url+"]",cause);
+		} finally {
+			primary.abort();
+			primaryFuture.cancel(true);
+			if (hedge != null) {
+				hedge.abort();
+				hedgeFuture.cancel(true);
+			}
+		}
+	}
+
+	private static void backoff(int attempt, String propUri) {
+		try {
+			Thread.sleep(RETRY_BACKOFF_MILLIS << (attempt - 1));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AppPropertiesException("interrupted while fetching URI:["+propUri+"]",e);
+		}
+	}
+
+	/*
+	 * Single GET request. Request that has not completed is aborted by disconnecting its connection, which also
+	 * unblocks its reads. Connection of completed request is left open, to be reused.
+	 */
+	private class Request implements Callable<Response> {
+
+		private final URL url;
+		private final Map<String, String> requestHeaders;
+		private volatile HttpURLConnection connection = null;
+		private volatile boolean completed = false;
+
+		Request(URL url, Map<String, String> requestHeaders) {
+			this.url = url;
+			this.requestHeaders = requestHeaders;
+		}
+
+		@Override
+		public Response call() throws IOException {
+			long start = System.nanoTime();
+			HttpURLConnection c = open();
+			try {
+				int status = c.getResponseCode();
+				InputStream is = status >= 400 ? c.getErrorStream() : c.getInputStream();
+				byte[] body = is == null ? new byte[0] : readBody(is, "gzip".equalsIgnoreCase(c.getContentEncoding()));
+				Map<String, String> headers = new HashMap<String, String>();
+				for (Map.Entry<String, List<String>> e : c.getHeaderFields().entrySet()) {
+					if (e.getKey() != null && !e.getValue().isEmpty()) {
+						headers.put(e.getKey().toLowerCase(), e.getValue().get(0));
+					}
+				}
+				completed = true;
+				if (status < 500) {
+					recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+				}
+				return new Response(status, headers, body);
+			} catch (IOException e) {
+				c.disconnect();
+				throw e;
+			}
+		}
+
+		/*
+		 * Hands body of 200 OK answer over to a handler while it is read. Body left unread by the handler is read to
+		 * its end, so the connection can be reused; connection of a failed handler is disconnected.
+		 */
+		void stream(BodyHandler handler, String propUri) throws IOException {
+			long start = System.nanoTime();
+			HttpURLConnection c = open();
+			try {
+				int status = c.getResponseCode();
+				if (status != HttpURLConnection.HTTP_OK) {
+					InputStream is = status >= 400 ? c.getErrorStream() : c.getInputStream();
+					if (is != null) {
+						readBody(is, false);
+					}
+					completed = true;
+					throw new AppPropertiesException("unexpected HTTP status:["+status+"] for URI:["+propUri+"]");
+				}
+				InputStream is = c.getInputStream();
+				if ("gzip".equalsIgnoreCase(c.getContentEncoding())) {
+					is = new GZIPInputStream(is, 8192);
+				}
+				try {
+					handler.handle(is, c.getContentType());
+					byte[] buffer = new byte[8192];
+					while (is.read(buffer) > 0) {
+						// drained, so the connection can be reused
+					}
+				} finally {
+					is.close();
+				}
+				completed = true;
+				recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+			} catch (IOException e) {
+				c.disconnect();
+				throw e;
+			} catch (RuntimeException e) {
+				if (!completed) {
+					c.disconnect();
+				}
+				throw e;
+			}
+		}
+
+		private HttpURLConnection open() throws IOException {
+			HttpURLConnection c = (HttpURLConnection) url.openConnection();
+			connection = c;
+			c.setConnectTimeout(connectTimeout);
+			c.setReadTimeout(readTimeout);
+			c.setUseCaches(false);
+			c.setRequestProperty("Accept-Encoding", "gzip");
+			for (Map.Entry<String, String> e : requestHeaders.entrySet()) {
+				c.setRequestProperty(e.getKey(), e.getValue());
+			}
+			return c;
+		}
+
+		void abort() {
+			HttpURLConnection c = connection;
+			if (!completed && c != null) {
+				c.disconnect();
+			}
+		}
+	}
+
+	/*
+	 * Reads stream to its end, so that its connection can be reused, and closes it
+	 */
+	private static byte[] readBody(InputStream is, boolean gzip) throws IOException {
+		InputStream in = is;
+		try {
+			if (gzip) {
+				in = new GZIPInputStream(is, 8192);
+			}
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = in.read(buffer)) > 0) {
+				bos.write(buffer, 0, n);
+			}
+			return bos.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	/*
+	 * Shared daemon threads of hedged requests, created on first use
+	 */
+	private static class HedgeExecutor {
+
+		static final ExecutorService POOL = Executors.newCachedThreadPool(new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "AppProperties-http-" + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+}
@@ -0,0 +1,216 @@
+package pl.karcisze.properties;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Property which value is a template with "${key}" placeholders, e.g. "jdbc:mysql://${db.host}/${db.name}".
+ * Template is parsed once, when the Property is created, into literal parts and referenced keys. Referenced keys
+ * are looked up as any other keys, so '.' and '_' are equivalent and case does not matter.
+ *
+ * Value is resolved lazily, on first access, against TrialAppProperties the Property is registered in, and converted
+ * to the type of its key by PropertyCompletionHandler. Resolved value is memoized until TrialAppProperties invalidates
+ * it, because a key it depends on, directly or transitively, has changed. A value resolved while it was invalidated
+ * is returned to its caller but not memoized, as it may have been resolved from the old value of a changed key.
+ *
+ * Value is empty (the Property is missing) if any referenced key is not registered or is empty, or if references
+ * form a cycle. Cycles are logged as warnings.
+ *
+ * Placeholders are not nested, and "${" without closing "}" is kept as literal text.
+ *
+ * @author Krzysztof Arciszewski
+ */
+public class InterpolatedProperty extends LazyProperty {
+
+	public final static Logger LOGGER = Logger.getLogger("AppProperties");
+
+	private static final String PLACEHOLDER_START = "${";
+	private static final String PLACEHOLDER_END = "}";
+
+	private final PropertyCompletionHandler propertyCompletionHandler;
+	// literal parts of template, one more than references: literals[i] precedes references[i]
+	private final String[] literals;
+	private final String[] references;
+	// container the template is resolved against, or null if the Property has not been registered yet
+	private final TrialAppProperties owner;
+	// resolved and converted value, or null if the value has not been resolved since it was invalidated
+	private volatile Object value = null;
+	// number of invalidations, a resolved value is memoized only if it has not changed while resolving
+	private long epoch = 0;
+
+	/*
+	 * @param key of the Property
+	 * @param template String value of the Property, with placeholders
+	 * @param propertyCompletionHandler handler used to convert resolved value
+	 */
+	public InterpolatedProperty(String key, String template, PropertyCompletionHandler propertyCompletionHandler) {
+		this(key, template, propertyCompletionHandler, parse(template), null);
+	}
+
+	private InterpolatedProperty(String key, String template, PropertyCompletionHandler propertyCompletionHandler,
+			String[][] parts, TrialAppProperties owner) {
+		super(key, template, propertyCompletionHandler);
+		this.propertyCompletionHandler = propertyCompletionHandler;
+		this.literals = parts[0];
+		this.references = parts[1];
+		this.owner = owner;
+	}
+
+	/*
+	 * @param value String value of a Property
+	 * @return true if the value has at least one placeholder
+	 */
+	public static boolean isTemplate(String value) {
+		return value.contains(PLACEHOLDER_START) && parse(value)[1].length > 0;
+	}
+
+	/*
+	 * Parses a value once, to check it is a template and to create the Property of it.
+	 *
+	 * @param key of the Property
+	 * @param value String value of the Property
+	 * @param propertyCompletionHandler handler used to convert resolved value
+	 * @return Property of a given template, or null if the value has no placeholders
+	 */
+	public static InterpolatedProperty create(String key, String value, PropertyCompletionHandler propertyCompletionHandler) {
+		if (!value.contains(PLACEHOLDER_START)) {
+			return null;
+		}
+		String[][] parts = parse(value);
+		return parts[1].length > 0 ? new InterpolatedProperty(key, value, propertyCompletionHandler, parts, null) : null;
+	}
+
+	/*
+	 * Splits template into literal parts and referenced keys
+	 *
+	 * @return array of literal parts and array of referenced keys
+	 */
+	private static String[][] parse(String template) {
+		List<String> literalList = new ArrayList<String>();
+		List<String> referenceList = new ArrayList<String>();
+		StringBuilder literal = new StringBuilder();
+		int i = 0;
+		while (true) {
+			int start = template.indexOf(PLACEHOLDER_START, i);
+			int end = start < 0 ? -1 : template.indexOf(PLACEHOLDER_END, start + PLACEHOLDER_START.length());
+			if (end < 0) {
+				literal.append(template, i, template.length());
+				break;
+			}
+			String reference = template.substring(start + PLACEHOLDER_START.length(), end).trim();
+			literal.append(template, i, start);
+			if (reference.isEmpty()) {
+				literal.append(template, start, end + 1);
+			} else {
+				literalList.add(literal.toString());
+				referenceList.add(reference);
+				literal.setLength(0);
+			}
+			i = end + 1;
+		}
+		literalList.add(literal.toString());
+		return new String[][] { literalList.toArray(new String[literalList.size()]), referenceList.toArray(new String[referenceList.size()]) };
+	}
+
+	/*
+	 * @return keys referenced by placeholders of the template, in order of placeholders
+	 */
+	public List<String> getReferences() {
+		return Collections.unmodifiableList(Arrays.asList(references));
+	}
+
+	/*
+	 * @param container TrialAppProperties the Property is registered in
+	 * @return this Property if it is resolved against the container already, or its copy resolved against the container
+	 */
+	InterpolatedProperty bindTo(TrialAppProperties container) {
+		if (owner == container) {
+			return this;
+		}
+		return new InterpolatedProperty(getKey(), getRawValue(), propertyCompletionHandler, new String[][] { literals, references }, container);
+	}
+
+	/*
+	 * Drops memoized value, so it is resolved again on next access
+	 */
+	synchronized void invalidate() {
+		epoch++;
+		value = null;
+	}
+
+	/*
+	 * @return true if value has been resolved since it was last invalidated
+	 */
+	@Override
+	public boolean isConverted() {
+		return value != null;
+	}
+
+	/*
+	 * @return value of this Property, resolved and converted on first call after invalidation
+	 */
+	@Override
+	public Object getValue() {
+		Object v = value;
+		if (v == null) {
+			v = resolve(new ArrayList<String>());
+		}
+		return v;
+	}
+
+	/*
+	 * @param path keys being resolved by the calling thread, to detect cycles
+	 */
+	private Object resolve(List<String> path) {
+		Object v = value;
+		if (v != null) {
+			return v;
+		}
+		if (owner == null) {
+			return Property.PROPERTY_EMPTYVALUE;
+		}
+		long resolveEpoch;
+		synchronized (this) {
+			resolveEpoch = epoch;
+		}
+		for (String k : path) {
+			if (PropertyKeyIndex.canonicalEquals(k, getKey())) {
+				LOGGER.log(Level.WARNING, "cyclic placeholder references:{0} -> {1} - Property left unset", new Object[] { path, getKey() });
+				return Property.PROPERTY_EMPTYVALUE;
+			}
+		}
+		path.add(getKey());
+		StringBuilder sb = new StringBuilder(literals[0]);
+		boolean resolved = true;
+		for (int i = 0; i < references.length && resolved; i++) {
+			Property p = (Property) owner.get(references[i]);
+			Object rv;
+			if (p == null) {
+				rv = Property.PROPERTY_EMPTYVALUE;
+			} else if (p instanceof InterpolatedProperty) {
+				rv = ((InterpolatedProperty) p).resolve(path);
+			} else {
+				rv = p.getValue();
+			}
+			if (Property.PROPERTY_EMPTYVALUE.equals(rv)) {
+				LOGGER.log(Level.FINE, "placeholder:[{0}] of Property with key:[{1}] is not set", new Object[] { references[i], getKey() });
+				resolved = false;
+			} else {
+				sb.append(PropertyExporter.formatValue(rv));
+				sb.append(literals[i + 1]);
+			}
+		}
+		path.remove(path.size() - 1);
+		v = resolved ? propertyCompletionHandler.createCompletedPropertyValue(getKey(), sb.toString()) : Property.PROPERTY_EMPTYVALUE;
+		synchronized (this) {
+			if (epoch == resolveEpoch) {
+				value = v;
+			}
+		}
+		return v;
+	}
+}
@@ -0,0 +1,246 @@
+package pl.karcisze.properties;
+
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * AppProperties composed of layers, one per property source, instead of a single container sources are copied into.
+ * Layers are ordered as their URIs: keys of later layers override keys of earlier ones.
+ *
+ * Each layer holds only Properties defined by its source, and is indexed by its own canonical key index. Lookups read
+ * a precomputed view: for every key it holds the Property of the top-most layer defining the key - the winning layer -
+ * or an unset Property if the key is only a member of abstraction class of a key defined in some layer.
+ * Replacing a layer, e.g. with refreshed content of its source, re-resolves only keys defined by the old or the new
+ * layer, and members of their abstraction classes. Other layers are neither reloaded nor merged again.
+ *
+ * Result is the same as of TrialAppPropertiesManager.loadProps for the same URIs, except that a key defined in
+ * different forms, e.g. "jdbc.url" and "JDBC_URL", is registered in the form used by its winning layer. All methods are synchronized,
+ * so layers may be replaced while Properties are read; readers needing a consistent view of many keys may use freeze().
+ *
+ * @author Krzysztof Arciszewski
+ */
+public class LayeredAppProperties implements AppProperties {
+
+	public final static Logger LOGGER = Logger.getLogger("AppProperties");
+
+	private final TrialAppPropertiesManager manager;
+	private final PropertyCompletionHandler propertyCompletionHandler = PropertyCompletionHandler.getPropertyManager();
+	private final List<String> propUris;
+	private final List<TrialAppProperties> layers;
+	// resolved Properties of all layers
+	private final TrialAppProperties view = new TrialAppProperties();
+	// index of winning layer by key, -1 if the key is registered only as member of an abstraction class
+	private final TreeMap<String, Integer> winningLayers = new TreeMap<String, Integer>(new PropertyKeyComparator());
+
+	/*
+	 * Loads every source as a separate layer.
+	 *
+	 * @param manager manager used to load layers
+	 * @param propUris an ordered list of properties files to load, keys in later URIs override old keys
+	 */
+	public LayeredAppProperties(TrialAppPropertiesManager manager, List<String> propUris) {
+		if(manager==null){
+			throw new InvalidParameterException("manager paramter is null");
+		}
+		if(propUris==null){
+			throw new InvalidParameterException("propUris paramter is null");
+		}
+		this.manager = manager;
+		this.propUris = new ArrayList<String>(propUris);
+		this.layers = new ArrayList<TrialAppProperties>(propUris.size());
+		for (String propUri : this.propUris) {
+			layers.add(manager.loadLayer(propUri));
+		}
+		TreeSet<String> keys = new TreeSet<String>(new PropertyKeyComparator());
+		for (TrialAppProperties layer : layers) {
+			addAffectedKeys(keys, layer);
+		}
+		resolve(keys);
+	}
+
+	/*
+	 * @return URIs of layers, from the bottom one to the top one
+	 */
+	public synchronized List<String> getPropUris() {
+		return Collections.unmodifiableList(new ArrayList<String>(propUris));
+	}
+
+	/*
+	 * Loads source of a layer again and replaces the layer with it
+	 *
+	 * @param layerIndex index of the layer, in order of URIs
+	 */
+	public void reloadLayer(int layerIndex) {
+		String propUri;
+		synchronized (this) {
+			propUri = propUris.get(layerIndex);
+		}
+		replaceLayer(layerIndex, propUri, manager.loadLayer(propUri));
+	}
+
+	/*
+	 * Replaces a single layer. Only keys defined by the old or the new layer, and members of their abstraction
+	 * classes, are resolved again.
+	 *
+	 * @param layerIndex index of the layer, in order of URIs
+	 * @param propUri URI of the new layer
+	 * @param layer Properties of the new layer, as loaded by TrialAppPropertiesManager.loadLayer
+	 */
+	public synchronized void replaceLayer(int layerIndex, String propUri, TrialAppProperties layer) {
+		if(propUri==null){
+			throw new InvalidParameterException("propUri paramter is null");
+		}
+		if(layer==null){
+			throw new InvalidParameterException("layer paramter is null");
+		}
+		TreeSet<String> keys = new TreeSet<String>(new PropertyKeyComparator());
+		addAffectedKeys(keys, layers.get(layerIndex));
+		addAffectedKeys(keys, layer);
+		layers.set(layerIndex, layer);
+		propUris.set(layerIndex, propUri);
+		resolve(keys);
+		LOGGER.log(Level.INFO, "layer:[{0}] replaced by URI:[{1}] - {2} keys resolved", new Object[] { layerIndex, propUri, keys.size() });
+	}
+
+	/*
+	 * @param key of Property, in any of its equivalent forms
+	 * @return index of layer defining the Property, -1 if Property is registered only as member of an abstraction
+	 *         class, or -2 if Property is not registered
+	 */
+	public synchronized int getWinningLayer(String key) {
+		if(key == null) {
+			throw new InvalidParameterException("key paramter is null");
+		}
+		Integer layerIndex = winningLayers.get(key);
+		return layerIndex == null ? -2 : layerIndex;
+	}
+
+	/*
+	 * @return read-only snapshot of resolved Properties
+	 */
+	public synchronized CompiledAppProperties freeze() {
+		return view.freeze();
+	}
+
+	/*
+	 * Adds keys defined by a layer, and members of their abstraction classes
+	 */
+	private void addAffectedKeys(TreeSet<String> keys, TrialAppProperties layer) {
+		for (String key : layer.properties.keySet()) {
+			keys.add(key);
+			TreeSet<String> closure = propertyCompletionHandler.getPropertyClosure(key);
+			if (closure != null) {
+				keys.addAll(closure);
+			}
+		}
+	}
+
+	/*
+	 * Resolves given keys against all layers, from the top one down
+	 */
+	private void resolve(TreeSet<String> keys) {
+		for (String key : keys) {
+			int winner = -2;
+			for (int i = layers.size() - 1; i >= 0 && winner < 0; i--) {
+				if (layers.get(i).containsProperty(key)) {
+					winner = i;
+				}
+			}
+			if (winner < 0 && isClosureMemberDefined(key)) {
+				winner = -1;
+			}
+			view.removeProperty(key);
+			if (winner >= 0) {
+				TrialAppProperties layer = layers.get(winner);
+				String definedKey = layer.properties.ceilingKey(key);
+				view.putProperty(definedKey, layer.properties.get(definedKey));
+				winningLayers.remove(key);
+				winningLayers.put(definedKey, winner);
+			} else if (winner == -1) {
+				view.putProperty(key, Property.getEmptyProperty(key));
+				winningLayers.remove(key);
+				winningLayers.put(key, winner);
+			} else {
+				winningLayers.remove(key);
+			}
+		}
+	}
+
+	/*
+	 * @return true if any member of abstraction class of a given key is defined by any layer
+	 */
+	private boolean isClosureMemberDefined(String key) {
+		TreeSet<String> closure = propertyCompletionHandler.getPropertyClosure(key);
+		if (closure == null) {
+			return false;
+		}
+		for (String kc : closure) {
+			for (TrialAppProperties layer : layers) {
+				if (layer.containsProperty(kc)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public synchronized List<String> getMissingProperties() {
+		return view.getMissingProperties();
+	}
+
+	@Override
+	public synchronized List<String> getKnownProperties() {
+		return view.getKnownProperties();
+	}
+
+	@Override
+	public synchronized boolean isValid() {
+		return view.isValid();
+	}
+
+	/*
+	 * Resets all resolved Properties to unset. Layers are not affected, so replacing a layer resolves its keys again.
+	 * Keys stay registered, with no winning layer, as if they were members of abstraction classes only.
+	 */
+	@Override
+	public synchronized void clear() {
+		view.clear();
+		for (Map.Entry<String, Integer> e : winningLayers.entrySet()) {
+			e.setValue(-1);
+		}
+	}
+
+	/*
+	 * Method to access Properties by their key. Lookup reads precomputed view, so it does not search layers.
+	 * Interpolated Property is resolved under the lock, against layers as they are now, and returned as a plain
+	 * Property of its resolved value, so it does not change when a layer it was resolved from is replaced.
+	 *
+	 * @param key of Property to be returned.
+	 * @return Property of a given key, or null if such Property has not been registered.
+	 */
+	@Override
+	public synchronized Object get(String key) {
+		Object p = view.get(key);
+		if (p instanceof InterpolatedProperty) {
+			InterpolatedProperty ip = (InterpolatedProperty) p;
+			return new Property(ip.getKey(), ip.getValue());
+		}
+		return p;
+	}
+
+	/*
+	 * @return String representation of resolved Properties
+	 */
+	@Override
+	public synchronized String toString() {
+		return view.toString();
+	}
+}
@@ -0,0 +1,59 @@
+package pl.karcisze.properties;
+
+import java.util.logging.Logger;
+
+/*
+ * Property which value is converted to the type of its key lazily, on first access, instead of when it is added.
+ * Raw String value is kept until then. Converted value is memoized in a volatile field: conversion is deterministic
+ * and its results are immutable, so concurrent first accesses may both convert, but all of them return equal values,
+ * and later accesses return the memoized one.
+ *
+ * @author Krzysztof Arciszewski
+ */
+public class LazyProperty extends Property {
+
+	public final static Logger LOGGER = Logger.getLogger("AppProperties");
+
+	private final PropertyCompletionHandler propertyCompletionHandler;
+	private final String rawValue;
+	// converted value, or null if the value has not been converted yet
+	private volatile Object value = null;
+
+	/*
+	 * @param key of the Property
+	 * @param rawValue String value of the Property, to be converted to the type of the key
+	 * @param propertyCompletionHandler handler used to convert the value
+	 */
+	public LazyProperty(String key, String rawValue, PropertyCompletionHandler propertyCompletionHandler) {
+		super(key, rawValue);
+		this.rawValue = rawValue;
+		this.propertyCompletionHandler = propertyCompletionHandler;
+	}
+
+	/*
+	 * @return value of this Property, converted on first call
+	 */
+	@Override
+	public Object getValue() {
+		Object v = value;
+		if (v == null) {
+			v = propertyCompletionHandler.createCompletedPropertyValue(getKey(), rawValue);
+			value = v;
+		}
+		return v;
+	}
+
+	/*
+	 * @return raw String value of this Property, as it has been added
+	 */
+	public String getRawValue() {
+		return rawValue;
+	}
+
+	/*
+	 * @return true if value has been converted already
+	 */
+	public boolean isConverted() {
+		return value != null;
+	}
+}
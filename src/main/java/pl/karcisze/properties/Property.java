@@ -18,8 +18,6 @@ public class Property {
 	private final String key;
 	private final Object value;
 
-	private final PropertyCompletionHandler propertyCompletionHandler = PropertyCompletionHandler.getPropertyManager();
-
 	/*
 	 * @param key to generate empty Property with
 	 * @return Property of a given key with empty value. Empty value means the Property is not defined
@@ -55,22 +53,33 @@ public class Property {
 	 */
 	@Override
 	public String toString() {
-		String r = key + ", " + propertyCompletionHandler.getPropertyType(key) + ", " + value;
+		String r = key + ", " + PropertyCompletionHandler.getPropertyManager().getPropertyType(key) + ", " + getValue();
 		return r;
 	}
 
 	/*
-	 * @return true if this Property is equal to the Property passed as a parameter. It compares both, key and value of Properties.
+	 * @return true if this Property is equal to the Property passed as a parameter. It compares class, key and value
+	 *         of Properties, as they have been constructed - value of lazily converted or interpolated Property is its
+	 *         raw String, so comparison never converts nor resolves values.
 	 */
 	@Override
 	public boolean equals(Object p) {
 		if(p==null){
 			return false;
 		}
-		if(p instanceof Property) {
+		if(p.getClass() == getClass()) {
 			return this.key.equals(((Property) p).key) && this.value.equals(((Property) p).value);
 		}else{
 			return false;
 		}
 	}
-}
\ No newline at end of file
+
+	/*
+	 * @return hash code consistent with equals, computed from both, key and value of Property as it has been
+	 *         constructed. It does not convert nor resolve values, and does not change when they are invalidated.
+	 */
+	@Override
+	public int hashCode() {
+		return 31 * key.hashCode() + value.hashCode();
+	}
+}
@@ -0,0 +1,166 @@
+package pl.karcisze.properties;
+
+import com.amazonaws.regions.Regions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidParameterException;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/*
+ * Compact binary format of loaded Properties, for fast startup. Files of this format have "*.propbin" extension and are
+ * loaded by PropertyFileParserBinary, without any text parsing nor type conversion. A single file may also be read
+ * straight into CompiledAppProperties by read, without AppPropertiesManager.
+ *
+ * Layout, big endian:
+ * - header: magic int "APB2", number of entries int, number of abstraction classes int,
+ * - key table: offset int of every entry, relative to the start of the file, in sorted case insensitive key order,
+ * - closure table: number of keys declared in every abstraction class int, as declared when the file was written,
+ * - entries: key length short, key UTF-8 bytes, index of abstraction class of the key int or -1 if the key is not
+ *   declared, type tag byte, value.
+ * Values are encoded by type tag:
+ * - TAG_EMPTY: no value - Property is registered but unset, e.g. because it is a member of a closure,
+ * - TAG_STRING and TAG_REGIONS: length int and UTF-8 bytes of String, or of name of AWS Region. Values of other types
+ *   are written as Strings, which are converted back when they are loaded,
+ * - TAG_LONG: long, TAG_INTEGER: int, TAG_DOUBLE: double, TAG_BOOLEAN: byte 0 or 1.
+ *
+ * @author Krzysztof Arciszewski
+ */
+public class PropertyBinaryFormat {
+
+	public final static Logger LOGGER = Logger.getLogger("AppProperties");
+
+	public static final String EXTENSION = ".propbin";
+
+	static final int MAGIC = 0x41504232;
+	static final int HEADER_SIZE = 12;
+
+	static final byte TAG_EMPTY = 0;
+	static final byte TAG_STRING = 1;
+	static final byte TAG_LONG = 2;
+	static final byte TAG_INTEGER = 3;
+	static final byte TAG_DOUBLE = 4;
+	static final byte TAG_BOOLEAN = 5;
+	static final byte TAG_REGIONS = 6;
+
+	/*
+	 * Writes Properties into a given file
+	 *
+	 * @param appProperties Properties to be written
+	 * @param f file to write Properties into
+	 */
+	public static void write(TrialAppProperties appProperties, File f) throws IOException {
+		OutputStream os = new FileOutputStream(f);
+		try {
+			write(appProperties, os);
+		} finally {
+			os.close();
+		}
+	}
+
+	/*
+	 * Writes Properties into a given stream
+	 *
+	 * @param appProperties Properties to be written
+	 * @param os stream to write Properties into. It is not closed.
+	 */
+	public static void write(TrialAppProperties appProperties, OutputStream os) throws IOException {
+		if(appProperties==null){
+			throw new InvalidParameterException("appProperties paramter is null");
+		}
+		if(os==null){
+			throw new InvalidParameterException("os paramter is null");
+		}
+		int count = appProperties.properties.size();
+		int[][] closures = CompiledAppProperties.compileClosures(appProperties.properties.keySet());
+		int[] closureOfKey = closures[0];
+		int[] closureSizes = closures[1];
+		ByteArrayOutputStream entries = new ByteArrayOutputStream();
+		DataOutputStream entriesOut = new DataOutputStream(entries);
+		int[] offsets = new int[count];
+		int entriesStart = HEADER_SIZE + 4 * count + 4 * closureSizes.length;
+		int i = 0;
+		for (Map.Entry<String, Property> e : appProperties.properties.entrySet()) {
+			offsets[i] = entriesStart + entriesOut.size();
+			writeEntry(entriesOut, e.getKey(), closureOfKey[i], e.getValue().getValue());
+			i++;
+		}
+		entriesOut.flush();
+
+		DataOutputStream out = new DataOutputStream(os);
+		out.writeInt(MAGIC);
+		out.writeInt(count);
+		out.writeInt(closureSizes.length);
+		for (int offset : offsets) {
+			out.writeInt(offset);
+		}
+		for (int closureSize : closureSizes) {
+			out.writeInt(closureSize);
+		}
+		entries.writeTo(out);
+		out.flush();
+	}
+
+	/*
+	 * Reads a file straight into read-only snapshot. Entries are taken from the mapped tables as they are, without
+	 * merging, conversion nor completion of abstraction classes - the file holds them completed already, and
+	 * abstraction classes are those declared when the file was written.
+	 *
+	 * @param f file to be read
+	 * @return read-only, thread safe snapshot of Properties of the file
+	 */
+	public static CompiledAppProperties read(File f) throws IOException {
+		if(f==null){
+			throw new InvalidParameterException("f paramter is null");
+		}
+		return PropertyFileParserBinary.compile(PropertyFileParserBinary.map(f), PropertyFileParserBinary.uri(f));
+	}
+
+	private static void writeEntry(DataOutputStream out, String key, int closure, Object value) throws IOException {
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		if (keyBytes.length > Short.MAX_VALUE) {
+			throw new AppPropertiesException("key too long to be written:["+key+"]");
+		}
+		out.writeShort(keyBytes.length);
+		out.write(keyBytes);
+		out.writeInt(closure);
+		if (Property.PROPERTY_EMPTYVALUE.equals(value)) {
+			out.writeByte(TAG_EMPTY);
+		} else if (value instanceof Long) {
+			out.writeByte(TAG_LONG);
+			out.writeLong((Long) value);
+		} else if (value instanceof Integer) {
+			out.writeByte(TAG_INTEGER);
+			out.writeInt((Integer) value);
+		} else if (value instanceof Double) {
+			out.writeByte(TAG_DOUBLE);
+			out.writeDouble((Double) value);
+		} else if (value instanceof Boolean) {
+			out.writeByte(TAG_BOOLEAN);
+			out.writeByte((Boolean) value ? 1 : 0);
+		} else if (value instanceof Regions) {
+			out.writeByte(TAG_REGIONS);
+			writeString(out, ((Regions) value).getName());
+		} else if (value instanceof InetAddress) {
+			// toString() gives "host/address", which is not converted back
+			out.writeByte(TAG_STRING);
+			writeString(out, ((InetAddress) value).getHostAddress());
+		} else {
+			out.writeByte(TAG_STRING);
+			writeString(out, value.toString());
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+}
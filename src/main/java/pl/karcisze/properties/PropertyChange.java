@@ -0,0 +1,111 @@
+package pl.karcisze.properties;
+
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.logging.Logger;
+
+/*
+ * Change of a single Property between two snapshots of AppProperties.
+ * Value of a Property that is not registered in a snapshot is null.
+ *
+ * @author Krzysztof Arciszewski
+ */
+public class PropertyChange {
+
+	public final static Logger LOGGER = Logger.getLogger("AppProperties");
+
+	public enum Kind {
+		ADDED, REMOVED, CHANGED
+	}
+
+	private final String key;
+	private final Object oldValue;
+	private final Object newValue;
+
+	/*
+	 * @param key key of changed Property
+	 * @param oldValue value in older snapshot, or null if Property has been added
+	 * @param newValue value in newer snapshot, or null if Property has been removed
+	 */
+	public PropertyChange(String key, Object oldValue, Object newValue) {
+		if(key==null){
+			throw new InvalidParameterException("key paramter is null");
+		}
+		this.key = key;
+		this.oldValue = oldValue;
+		this.newValue = newValue;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public Object getOldValue() {
+		return oldValue;
+	}
+
+	public Object getNewValue() {
+		return newValue;
+	}
+
+	public Kind getKind() {
+		if (oldValue == null) {
+			return Kind.ADDED;
+		}
+		if (newValue == null) {
+			return Kind.REMOVED;
+		}
+		return Kind.CHANGED;
+	}
+
+	/*
+	 * Computes changes between two snapshots by a single merge walk of their sorted keys. Properties shared by both
+	 * snapshots are compared by reference first, so unchanged Properties carried over are not compared by value.
+	 *
+	 * @param older older snapshot, or null if there was none
+	 * @param newer newer snapshot
+	 * @return changes, in sorted key order
+	 */
+	public static List<PropertyChange> diff(CompiledAppProperties older, CompiledAppProperties newer) {
+		if(newer==null){
+			throw new InvalidParameterException("newer paramter is null");
+		}
+		List<PropertyChange> changes = new ArrayList<PropertyChange>();
+		if (older == newer) {
+			return changes;
+		}
+		Comparator<String> comparator = new PropertyKeyComparator();
+		Iterator<Property> o = older == null ? new ArrayList<Property>().iterator() : older.sortedProperties().iterator();
+		Iterator<Property> n = newer.sortedProperties().iterator();
+		Property po = o.hasNext() ? o.next() : null;
+		Property pn = n.hasNext() ? n.next() : null;
+		while (po != null || pn != null) {
+			int c = po == null ? 1 : pn == null ? -1 : comparator.compare(po.getKey(), pn.getKey());
+			if (c < 0) {
+				changes.add(new PropertyChange(po.getKey(), po.getValue(), null));
+				po = o.hasNext() ? o.next() : null;
+			} else if (c > 0) {
+				changes.add(new PropertyChange(pn.getKey(), null, pn.getValue()));
+				pn = n.hasNext() ? n.next() : null;
+			} else {
+				if (po != pn && !po.getValue().equals(pn.getValue())) {
+					changes.add(new PropertyChange(pn.getKey(), po.getValue(), pn.getValue()));
+				}
+				po = o.hasNext() ? o.next() : null;
+				pn = n.hasNext() ? n.next() : null;
+			}
+		}
+		return changes;
+	}
+
+	/*
+	 * @return String representation of instance of this class.
+	 */
+	@Override
+	public String toString() {
+		return getKind() + " " + key + ", " + oldValue + ", " + newValue;
+	}
+}
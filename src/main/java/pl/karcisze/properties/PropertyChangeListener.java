@@ -0,0 +1,20 @@
+package pl.karcisze.properties;
+
+import java.util.List;
+
+/*
+ * Listener of changes of Properties published by ReloadingAppProperties.
+ *
+ * @author Krzysztof Arciszewski
+ */
+public interface PropertyChangeListener {
+
+	/*
+	 * Called with all changes, selected by subscription of the listener, between the snapshot last delivered and the
+	 * newest snapshot. Snapshots published in between are coalesced, so intermediate states are never delivered.
+	 * Called on delivery thread of ReloadingAppProperties, never concurrently for the same ReloadingAppProperties.
+	 *
+	 * @param changes non empty list of changes, in sorted key order
+	 */
+	void propertiesChanged(List<PropertyChange> changes);
+}
@@ -1,11 +1,13 @@
 package pl.karcisze.properties;
 
-import com.amazonaws.regions.Regions;
-
 import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -16,13 +18,15 @@ import java.util.logging.Logger;
  * specify types for Properties of given names, and provide information on what are abstraction classes of each of
  * Properties.
  * Abstraction class is a set of Properties that must be registered in AppProperties instance if any of Properties
- * in that abstraction class is registered in the instance.
+ * in that abstraction class is registered in the instance. Every declared key is given an integer id, and every
+ * abstraction class is compiled into a BitSet of ids of its keys, so that registration and completeness checks of
+ * abstraction classes are bitwise operations.
  *
- * One is allowed to extend this class with another Properties (keys and types). One is also welcome to extend
- * createCompletedPropertyValue method which is dedicated to new create values of Properties, if propertyTypesInitial variable
- * provides a specific type for a Property (which is different from java.lang.String). Type registered in propertyTypesInitial
- * for a given Property key must be the same as type of value returned by createCompletedPropertyValue method
- * for the Property key.
+ * One is allowed to extend this class with another Properties (keys and types). Values of Properties are created by
+ * PropertyValueConverter registered in PropertyValueConverters for the type of the Property; new types are supported
+ * by registering their converters with ServiceLoader. Each key is bound to its converter once, when this class is
+ * constructed. Type registered in propertyTypesInitial for a given Property key must be the same as type of value
+ * returned by its converter.
  *
  * This is supporting class for TrialAppPropertiesManager.
  *
@@ -63,6 +67,14 @@ public class PropertyCompletionHandler {
 
 	private Map<String, TreeSet<String>> propertyClosures = new HashMap<String, TreeSet<String>>();
 	private Map<String, String> propertyTypes = new HashMap<String, String>();
+	// declared keys by their canonical form
+	private TreeMap<String, String> declaredKeys = new TreeMap<String, String>(new PropertyKeyComparator());
+	private Map<String, PropertyValueConverter> propertyConverters = new HashMap<String, PropertyValueConverter>();
+	// ids by canonical form of keys, so equivalent forms of a key share its id
+	private TreeMap<String, Integer> propertyIds = new TreeMap<String, Integer>(new PropertyKeyComparator());
+	private List<String> propertyKeysById = new ArrayList<String>();
+	// closure mask by key id; keys of the same abstraction class share the mask
+	private List<BitSet> propertyClosureMasksById = new ArrayList<BitSet>();
 
 	/*
      * Constructor to create PropertyCompletionHandler with a given initial configuration.
@@ -96,33 +108,89 @@ public class PropertyCompletionHandler {
 
 		for (int i = 0; i < _propertyKeys.length; i++) {
 			TreeSet<String> closure = new TreeSet<String>(new PropertyKeyComparator());
+			BitSet closureMask = new BitSet();
 			int closureArraySize = _propertyKeys[i].length;
 			for (int j = 0; j < closureArraySize; j++) {
 				String key = _propertyKeys[i][j];
 				closure.add(key);
+				Integer id = propertyIds.get(key);
+				if (id == null) {
+					id = propertyKeysById.size();
+					propertyIds.put(key, id);
+					propertyKeysById.add(key);
+					propertyClosureMasksById.add(null);
+				}
+				closureMask.set(id);
 			}
 			for (int j = 0; j < closureArraySize; j++) {
 				String key = _propertyKeys[i][j];
 				propertyClosures.put(key, closure);
+				propertyClosureMasksById.set(propertyIds.get(key), closureMask);
 				propertyTypes.put(key, _propertyTypes[i][j]);
+				if (!declaredKeys.containsKey(key)) {
+					declaredKeys.put(key, key);
+				}
+				propertyConverters.put(key, bindConverter(_propertyTypes[i][j]));
 			}
 		}
 	}
 
 	/*
-	 * @param propertyKey used to select all Property keys in its abstraction class. Abstraction classes are predefined in propertyKeysInitial constant
+	 * @param propertyKey in any of its equivalent forms, used to select all Property keys in its abstraction class. Abstraction classes are predefined in propertyKeysInitial constant
 	 * @return set of all keys in abstraction class of Property of a given key
 	 */
 	protected TreeSet<String> getPropertyClosure(String propertyKey) {
-		return propertyClosures.get(propertyKey);
+		TreeSet<String> closure = propertyClosures.get(propertyKey);
+		if (closure == null) {
+			String declaredKey = declaredKeys.get(propertyKey);
+			closure = declaredKey == null ? null : propertyClosures.get(declaredKey);
+		}
+		return closure;
+	}
+
+	/*
+	 * @param key Property key, in any of its equivalent forms, e.g. "HIBERNATE_SHOW_SQL" for "hibernate.show_sql"
+	 * @return declared key equivalent to a given key, or null if no such key has been declared
+	 */
+	protected String getDeclaredKey(String key) {
+		return declaredKeys.get(key);
+	}
+
+	/*
+	 * @param propertyKey key of Property, in any of its equivalent forms
+	 * @return id of Property of a given key, or -1 if the key has not been declared
+	 */
+	protected int getPropertyId(String propertyKey) {
+		Integer id = propertyIds.get(propertyKey);
+		return id == null ? -1 : id;
 	}
 
 	/*
-	 * @param propertyKey value used to select Property type, that is predefined in propertyTypesInitial constant
+	 * @param id id of declared Property
+	 * @return key of Property of a given id
+	 */
+	protected String getPropertyKey(int id) {
+		return propertyKeysById.get(id);
+	}
+
+	/*
+	 * @param id id of declared Property
+	 * @return set of ids of all keys in abstraction class of Property of a given id. It is shared, so it must not be modified.
+	 */
+	protected BitSet getPropertyClosureMask(int id) {
+		return propertyClosureMasksById.get(id);
+	}
+
+	/*
+	 * @param propertyKey value, in any of its equivalent forms, used to select Property type, that is predefined in propertyTypesInitial constant
 	 * @return String representation of Property type of a given key
 	 */
 	protected String getPropertyType(String propertyKey) {
 		String type = propertyTypes.get(propertyKey);
+		if (type == null) {
+			String declaredKey = declaredKeys.get(propertyKey);
+			type = declaredKey == null ? null : propertyTypes.get(declaredKey);
+		}
 		if (type == null) {
 			type = PROPERTY_TYPE_DEFAULT;
 		}
@@ -147,76 +215,55 @@ public class PropertyCompletionHandler {
 		return sb.toString();
 	}
 
+	/*
+	 * @param type type of Property
+	 * @return converter registered for the type, or converter that fails on every conversion if the type is not supported.
+	 *         Unsupported types fail on conversion rather than here, so that Properties of such types may still be declared.
+	 */
+	private static PropertyValueConverter bindConverter(final String type) {
+		PropertyValueConverter converter = PropertyValueConverters.get(type);
+		if (converter != null) {
+			return converter;
+		}
+		return new PropertyValueConverter() {
+			public String getType() {
+				return type;
+			}
+
+			public Object convert(String value) {
+				throw new AppPropertiesException("property type:["+type+"] not supported");
+			}
+		};
+	}
+
 	/*
 	 * Method dedicated to create Property values, which type of conform to the Property registration in
 	 * propertyKeysInitial and propertyTypesInitial (constant values defined in this class).
 	 * If parameter value does not match requirements to create given object type, then empty value is returned -
 	 * this means type mismatch.
 	 *
-	 * @param key key of a Property value to be created. It is used to define type of the value object.
+	 * @param key key of a Property value to be created. It is used to select converter bound to the key.
 	 * 		  Types are defined in propertyTypesInitial constant in this class.
 	 * @param value value of a Property. This value is directly returned by this method, or this value is used
 	 *        to create actual value of Property of type of the key.
 	 * @return value of the Property, directly returned, or newly created
 	 */
 	protected Object createCompletedPropertyValue(String key, String value) {
-		String type = getPropertyType(key);
-		if ("java.lang.String".equals(type)) {
-			LOGGER.log(Level.INFO, "String value is passed by:["+value+"]");
-			return value;
+		PropertyValueConverter converter = propertyConverters.get(key);
+		if (converter == null) {
+			String declaredKey = declaredKeys.get(key);
+			converter = declaredKey == null ? null : propertyConverters.get(declaredKey);
 		}
-		if ("java.lang.Boolean".equals(type)) {
-			if ("true".equals(value)) {
-				LOGGER.log(Level.INFO, "Booleqn(true) to be created:["+value+"]");
-				return new Boolean(true);
-			} else if ("false".equals(value)) {
-				LOGGER.log(Level.INFO, "Booleqn(false) to be created:["+value+"]");
-				return new Boolean(false);
-			} else {
-				LOGGER.log(Level.WARNING, "Boolean type creation: passed value is not 'true' nor 'false' - returning empty property value");
-				return Property.PROPERTY_EMPTYVALUE;
-			}
+		if (converter == null) {
+			converter = PropertyValueConverters.STRING;
 		}
-		if ("java.lang.Integer".equals(type)) {
-			try {
-				LOGGER.log(Level.INFO, "Integer to be created:["+value+"]");
-				return new Integer(value);
-			} catch (NumberFormatException e) {
-				LOGGER.log(Level.WARNING, "Integer type creation: passed value does not represent numerical value:["+value+"] - returning empty property value");
-				return Property.PROPERTY_EMPTYVALUE;
-			}
-		}
-		if ("java.lang.Long".equals(type)) {
-			try {
-				LOGGER.log(Level.INFO, "Long to be created:["+value+"]");
-				return new Long(value);
-			} catch (NumberFormatException e) {
-				LOGGER.log(Level.WARNING, "Long type creation: passed value does not represent numerical value:["+value+"] - returning empty property value");
-				return Property.PROPERTY_EMPTYVALUE;
-			}
-		}
-		if ("java.lang.Double".equals(type)) {
-			try {
-				LOGGER.log(Level.INFO, "Double to be created:["+value+"]");
-				return new Double(value);
-			} catch (NumberFormatException e) {
-				LOGGER.log(Level.WARNING, "Double type creation: passed value does not represent numerical value:["+value+"] - returning empty property value");
-				return Property.PROPERTY_EMPTYVALUE;
-			}
+		Object v = converter.convert(value);
+		if (Property.PROPERTY_EMPTYVALUE.equals(v) && !Property.PROPERTY_EMPTYVALUE.equals(value)) {
+			LOGGER.log(Level.WARNING, "{0} type creation: passed value does not represent value of the type:[{1}] - returning empty property value",
+					new Object[] { converter.getType(), value });
+		} else {
+			LOGGER.log(Level.FINE, "{0} created:[{1}]", new Object[] { converter.getType(), value });
 		}
-		if ("com.amazonaws.regions.Regions".equals(type)) {
-			try {
-				LOGGER.log(Level.INFO, "AWS Regions to be created:["+value+"]");
-				return Regions.fromName(value);
-			} catch (java.lang.IllegalArgumentException e){
-				LOGGER.log(Level.WARNING, "AWS Regions type creation: passed value does not AWS Region identifier:["+value+"] - returning empty property value");
-				return Property.PROPERTY_EMPTYVALUE;
-			}
-		}
-
-		// TODO NEW PROPERTY TYPES must be handled here
-		// ...
-
-		throw new AppPropertiesException("property type:["+type+"] not supported");
+		return v;
 	}
 }
@@ -0,0 +1,413 @@
+package pl.karcisze.properties;
+
+import com.amazonaws.regions.Regions;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.security.InvalidParameterException;
+import java.util.logging.Logger;
+
+/*
+ * Exporter of Properties, in sorted key order, into an OutputStream or a WritableByteChannel. Characters are encoded
+ * straight into a reusable byte buffer, which is written out only when it is full and at the end of export, so a dump
+ * takes a few large writes instead of one write per Property. Keys and numeric values are written without creating
+ * intermediate Strings.
+ * Properties may also be written as characters into an Appendable, e.g. a PrintStream or a Writer, through a reusable
+ * char buffer. Characters are then encoded by the destination, in its own encoding, instead of the encodings below.
+ *
+ * Supported formats:
+ * - TEXT: "key, type, value" lines, as printed by TrialAppPropertiesManager.printProperties, UTF-8 encoded,
+ * - PROPERTIES: "key=value" lines, escaped as read by java.util.Properties.load(InputStream), ISO-8859-1 encoded,
+ * - JSON: single flat JSON object, UTF-8 encoded. Unset Properties are written as null.
+ * PROPERTIES and JSON values are written so that they are converted back to the same values when they are loaded.
+ *
+ * Instance may be reused for many exports, but it is not thread safe.
+ *
+ * @author Krzysztof Arciszewski
+ */
+public class PropertyExporter {
+
+	public final static Logger LOGGER = Logger.getLogger("AppProperties");
+
+	public enum Format {
+		TEXT, PROPERTIES, JSON
+	}
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final byte[] HEX = "0123456789ABCDEF".getBytes();
+	private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes();
+
+	private final Format format;
+	private final PropertyCompletionHandler propertyCompletionHandler = PropertyCompletionHandler.getPropertyManager();
+	// buffers are allocated on first export of their kind, so an exporter used for one kind holds one buffer only
+	private byte[] buffer = null;
+	private ByteBuffer byteBuffer = null;
+	private char[] chars = null;
+	private final byte[] digits = new byte[20];
+	private int length = 0;
+	// destination of current export, one of them is set
+	private OutputStream os = null;
+	private WritableByteChannel channel = null;
+	private Appendable appendable = null;
+
+	/*
+	 * @param format format of exported Properties
+	 */
+	public PropertyExporter(Format format) {
+		if(format==null){
+			throw new InvalidParameterException("format paramter is null");
+		}
+		this.format = format;
+	}
+
+	/*
+	 * @return format of exported Properties
+	 */
+	public Format getFormat() {
+		return format;
+	}
+
+	/*
+	 * Exports Properties into a given stream. Stream is flushed, but not closed.
+	 *
+	 * @param props Properties to be exported
+	 * @param os stream to export Properties into
+	 */
+	public void export(AppProperties props, OutputStream os) throws IOException {
+		if(os==null){
+			throw new InvalidParameterException("os paramter is null");
+		}
+		allocateBytes();
+		this.os = os;
+		try {
+			export(props);
+			os.flush();
+		} finally {
+			this.os = null;
+			length = 0;
+		}
+	}
+
+	/*
+	 * Exports Properties into a given channel. Channel is not closed.
+	 *
+	 * @param props Properties to be exported
+	 * @param channel channel to export Properties into
+	 */
+	public void export(AppProperties props, WritableByteChannel channel) throws IOException {
+		if(channel==null){
+			throw new InvalidParameterException("channel paramter is null");
+		}
+		allocateBytes();
+		this.channel = channel;
+		try {
+			export(props);
+		} finally {
+			this.channel = null;
+			length = 0;
+		}
+	}
+
+	/*
+	 * Writes Properties as characters into a given destination, which encodes them in its own encoding.
+	 * PrintStream destination is flushed, but not closed.
+	 *
+	 * @param props Properties to be written
+	 * @param out destination to write Properties into
+	 */
+	public void write(AppProperties props, Appendable out) throws IOException {
+		if(out==null){
+			throw new InvalidParameterException("out paramter is null");
+		}
+		if (chars == null) {
+			chars = new char[BUFFER_SIZE];
+		}
+		this.appendable = out;
+		try {
+			export(props);
+			if (out instanceof Flushable) {
+				((Flushable) out).flush();
+			}
+		} finally {
+			this.appendable = null;
+			length = 0;
+		}
+	}
+
+	private void allocateBytes() {
+		if (buffer == null) {
+			buffer = new byte[BUFFER_SIZE];
+			byteBuffer = ByteBuffer.wrap(buffer);
+		}
+	}
+
+	/*
+	 * @param props Properties of any of the implementations of this package
+	 * @return Properties in sorted key order
+	 */
+	static Iterable<Property> sortedProperties(AppProperties props) {
+		if(props==null){
+			throw new InvalidParameterException("props paramter is null");
+		}
+		if (props instanceof ReloadingAppProperties) {
+			props = ((ReloadingAppProperties) props).getSnapshot();
+		}
+		if (props instanceof LayeredAppProperties) {
+			props = ((LayeredAppProperties) props).freeze();
+		}
+		if (props instanceof CompiledAppProperties) {
+			return ((CompiledAppProperties) props).sortedProperties();
+		}
+		if (props instanceof TrialAppProperties) {
+			return ((TrialAppProperties) props).properties.values();
+		}
+		throw new AppPropertiesException("props to be printed in not of TrialAppProperties type - which is invalid");
+	}
+
+	private void export(AppProperties props) throws IOException {
+		Iterable<Property> properties = sortedProperties(props);
+		if (format == Format.JSON) {
+			writeAscii("{");
+		}
+		boolean first = true;
+		for (Property p : properties) {
+			switch (format) {
+			case TEXT:
+				writeText(p);
+				break;
+			case PROPERTIES:
+				writeProperties(p);
+				break;
+			case JSON:
+				writeAscii(first ? "\n  " : ",\n  ");
+				writeJSON(p);
+				break;
+			}
+			first = false;
+		}
+		if (format == Format.JSON) {
+			writeAscii(first ? "}\n" : "\n}\n");
+		}
+		flush();
+	}
+
+	private void writeText(Property p) throws IOException {
+		String key = p.getKey();
+		writeUTF8(key);
+		writeAscii(", ");
+		writeUTF8(propertyCompletionHandler.getPropertyType(key));
+		writeAscii(", ");
+		Object value = p.getValue();
+		if (value instanceof Long || value instanceof Integer) {
+			writeLong(((Number) value).longValue());
+		} else {
+			writeUTF8(value.toString());
+		}
+		for (byte b : LINE_SEPARATOR) {
+			put(b);
+		}
+	}
+
+	private void writeProperties(Property p) throws IOException {
+		writePropertiesEscaped(p.getKey(), true);
+		put('=');
+		Object value = p.getValue();
+		if (value instanceof Long || value instanceof Integer) {
+			writeLong(((Number) value).longValue());
+		} else {
+			writePropertiesEscaped(formatValue(value), false);
+		}
+		put('\n');
+	}
+
+	private void writeJSON(Property p) throws IOException {
+		writeJSONString(p.getKey());
+		writeAscii(": ");
+		Object value = p.getValue();
+		if (Property.PROPERTY_EMPTYVALUE.equals(value)) {
+			writeAscii("null");
+		} else if (value instanceof Long || value instanceof Integer) {
+			writeLong(((Number) value).longValue());
+		} else if (value instanceof Double && !((Double) value).isNaN() && !((Double) value).isInfinite()) {
+			writeAscii(value.toString());
+		} else if (value instanceof Boolean) {
+			writeAscii(((Boolean) value) ? "true" : "false");
+		} else {
+			writeJSONString(formatValue(value));
+		}
+	}
+
+	/*
+	 * @return String of a value, that is converted back to the value when it is loaded
+	 */
+	static String formatValue(Object value) {
+		if (value instanceof Regions) {
+			return ((Regions) value).getName();
+		}
+		if (value instanceof InetAddress) {
+			return ((InetAddress) value).getHostAddress();
+		}
+		return value.toString();
+	}
+
+	private void writePropertiesEscaped(String s, boolean key) throws IOException {
+		int n = s.length();
+		for (int i = 0; i < n; i++) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '\\': writeAscii("\\\\"); break;
+			case '\t': writeAscii("\\t"); break;
+			case '\n': writeAscii("\\n"); break;
+			case '\r': writeAscii("\\r"); break;
+			case '\f': writeAscii("\\f"); break;
+			case ' ':
+				// spaces separate key from value, and leading spaces of value are skipped
+				if (key || i == 0) {
+					put('\\');
+				}
+				put(' ');
+				break;
+			case '=': case ':': case '#': case '!':
+				if (key || i == 0) {
+					put('\\');
+				}
+				put(c);
+				break;
+			default:
+				if (c < 0x20 || c > 0x7e) {
+					writeUnicodeEscape(c);
+				} else {
+					put(c);
+				}
+			}
+		}
+	}
+
+	private void writeJSONString(String s) throws IOException {
+		put('"');
+		int n = s.length();
+		for (int i = 0; i < n; i++) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '"': writeAscii("\\\""); break;
+			case '\\': writeAscii("\\\\"); break;
+			case '\n': writeAscii("\\n"); break;
+			case '\r': writeAscii("\\r"); break;
+			case '\t': writeAscii("\\t"); break;
+			default:
+				if (c < 0x20) {
+					writeUnicodeEscape(c);
+				} else {
+					i = writeUTF8Char(s, i);
+				}
+			}
+		}
+		put('"');
+	}
+
+	private void writeUnicodeEscape(char c) throws IOException {
+		put('\\');
+		put('u');
+		put(HEX[(c >> 12) & 0xf]);
+		put(HEX[(c >> 8) & 0xf]);
+		put(HEX[(c >> 4) & 0xf]);
+		put(HEX[c & 0xf]);
+	}
+
+	private void writeAscii(String s) throws IOException {
+		int n = s.length();
+		for (int i = 0; i < n; i++) {
+			put(s.charAt(i));
+		}
+	}
+
+	private void writeUTF8(String s) throws IOException {
+		int n = s.length();
+		for (int i = 0; i < n; i++) {
+			i = writeUTF8Char(s, i);
+		}
+	}
+
+	/*
+	 * Writes UTF-8 bytes of character at a given index, or of surrogate pair starting at the index.
+	 * Characters written into Appendable are put as they are, to be encoded by the destination.
+	 *
+	 * @return index of the last character written
+	 */
+	private int writeUTF8Char(String s, int i) throws IOException {
+		char c = s.charAt(i);
+		if (c < 0x80 || appendable != null) {
+			put(c);
+		} else if (c < 0x800) {
+			put(0xc0 | (c >> 6));
+			put(0x80 | (c & 0x3f));
+		} else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+			int cp = Character.toCodePoint(c, s.charAt(i + 1));
+			put(0xf0 | (cp >> 18));
+			put(0x80 | ((cp >> 12) & 0x3f));
+			put(0x80 | ((cp >> 6) & 0x3f));
+			put(0x80 | (cp & 0x3f));
+			return i + 1;
+		} else if (Character.isSurrogate(c)) {
+			put('?');
+		} else {
+			put(0xe0 | (c >> 12));
+			put(0x80 | ((c >> 6) & 0x3f));
+			put(0x80 | (c & 0x3f));
+		}
+		return i;
+	}
+
+	private void writeLong(long v) throws IOException {
+		if (v == Long.MIN_VALUE) {
+			writeAscii(Long.toString(v));
+			return;
+		}
+		if (v < 0) {
+			put('-');
+			v = -v;
+		}
+		int i = digits.length;
+		do {
+			digits[--i] = (byte) ('0' + (v % 10));
+			v /= 10;
+		} while (v != 0);
+		for (; i < digits.length; i++) {
+			put(digits[i]);
+		}
+	}
+
+	private void put(int b) throws IOException {
+		if (length == BUFFER_SIZE) {
+			flush();
+		}
+		if (appendable != null) {
+			chars[length++] = (char) b;
+		} else {
+			buffer[length++] = (byte) b;
+		}
+	}
+
+	private void flush() throws IOException {
+		if (length == 0) {
+			return;
+		}
+		if (appendable != null) {
+			appendable.append(CharBuffer.wrap(chars, 0, length));
+		} else if (os != null) {
+			os.write(buffer, 0, length);
+		} else {
+			byteBuffer.clear();
+			byteBuffer.limit(length);
+			while (byteBuffer.hasRemaining()) {
+				channel.write(byteBuffer);
+			}
+		}
+		length = 0;
+	}
+}
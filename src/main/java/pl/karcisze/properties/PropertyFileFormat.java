@@ -0,0 +1,44 @@
+package pl.karcisze.properties;
+
+/*
+ * Format of property sources, with the parser of the format. Formats are registered in PropertyFileFormats, either as
+ * built-in ones, or by ServiceLoader - implementations listed in
+ * META-INF/services/pl.karcisze.properties.PropertyFileFormat files on the classpath.
+ *
+ * Format of a source is selected by extension of its URI, then by Content-Type of its answer (http:// sources only),
+ * and finally by sniffing the first bytes of its content.
+ *
+ * Formats must be stateless and thread safe, as a single instance is shared by all loads.
+ *
+ * @author Krzysztof Arciszewski
+ */
+public interface PropertyFileFormat {
+
+	/*
+	 * @return name of the format, e.g. "json". A format found by ServiceLoader replaces a built-in format of the same name.
+	 */
+	String getName();
+
+	/*
+	 * @return extensions of URIs of sources of this format, with leading dot, e.g. ".json"
+	 */
+	String[] getExtensions();
+
+	/*
+	 * @return media types of sources of this format, without parameters, e.g. "application/json"
+	 */
+	String[] getContentTypes();
+
+	/*
+	 * @param head first bytes of content of a source
+	 * @param length number of bytes in head, which may be less than its length for short sources
+	 * @return true if the content looks like a source of this format
+	 */
+	boolean sniff(byte[] head, int length);
+
+	/*
+	 * @return parser of sources of this format. Parser holds no state of a single load, so it is created once
+	 *         and reused by all loads.
+	 */
+	PropertyFileParser createParser();
+}
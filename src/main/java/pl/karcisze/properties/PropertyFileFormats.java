@@ -0,0 +1,252 @@
+package pl.karcisze.properties;
+
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Registry of PropertyFileFormat instances. Registry holds built-in formats of "*.propbin", "*.json" and "*.properties"
+ * sources, and formats found by ServiceLoader. A format found by ServiceLoader replaces a built-in format of
+ * the same name.
+ *
+ * Sniffing tries formats in order: "*.propbin" (by its magic number), "*.json" (content starting with '{'), formats
+ * found by ServiceLoader, and finally "*.properties", which accepts text content whose first line, other than blank
+ * lines and comments, is a "key=value" or "key:value" line.
+ *
+ * Registry is built once, when this class is initialized.
+ *
+ * @author Krzysztof Arciszewski
+ */
+public class PropertyFileFormats {
+
+	public final static Logger LOGGER = Logger.getLogger("AppProperties");
+
+	// number of first bytes of content that formats are sniffed on
+	public static final int SNIFF_LENGTH = 512;
+
+	public static final PropertyFileFormat BINARY = new PropertyFileFormat() {
+		public String getName() {
+			return "propbin";
+		}
+
+		public String[] getExtensions() {
+			return new String[] { PropertyBinaryFormat.EXTENSION };
+		}
+
+		public String[] getContentTypes() {
+			return new String[] { "application/x-propbin" };
+		}
+
+		public boolean sniff(byte[] head, int length) {
+			return length >= 4 && ((head[0] & 0xff) << 24 | (head[1] & 0xff) << 16 | (head[2] & 0xff) << 8 | (head[3] & 0xff)) == PropertyBinaryFormat.MAGIC;
+		}
+
+		public PropertyFileParser createParser() {
+			return new PropertyFileParserBinary();
+		}
+	};
+
+	public static final PropertyFileFormat JSON = new PropertyFileFormat() {
+		public String getName() {
+			return "json";
+		}
+
+		public String[] getExtensions() {
+			return new String[] { ".json" };
+		}
+
+		public String[] getContentTypes() {
+			return new String[] { "application/json", "text/json" };
+		}
+
+		public boolean sniff(byte[] head, int length) {
+			int i = 0;
+			// UTF-8 byte order mark
+			if (length >= 3 && (head[0] & 0xff) == 0xef && (head[1] & 0xff) == 0xbb && (head[2] & 0xff) == 0xbf) {
+				i = 3;
+			}
+			while (i < length && (head[i] == ' ' || head[i] == '\t' || head[i] == '\r' || head[i] == '\n')) {
+				i++;
+			}
+			return i < length && head[i] == '{';
+		}
+
+		public PropertyFileParser createParser() {
+			return new PropertyFileParserJSON();
+		}
+	};
+
+	/*
+	 * Format of "*.properties" sources. Files are memory-mapped, other streams are read as java.util.Properties.
+	 */
+	public static final PropertyFileFormat PROPERTIES = new PropertyFileFormat() {
+		public String getName() {
+			return "properties";
+		}
+
+		public String[] getExtensions() {
+			return new String[] { ".properties" };
+		}
+
+		public String[] getContentTypes() {
+			return new String[] { "text/x-java-properties" };
+		}
+
+		/*
+		 * Accepts content without NUL bytes whose first line, other than blank lines and comments, has a non-blank key
+		 * of no whitespace nor '<' followed by '=' or ':', so error pages of HTML or XML are not loaded as keys.
+		 * Content of blank lines and comments only is accepted, as it defines no Properties.
+		 */
+		public boolean sniff(byte[] head, int length) {
+			for (int i = 0; i < length; i++) {
+				if (head[i] == 0) {
+					return false;
+				}
+			}
+			int i = 0;
+			// UTF-8 byte order mark
+			if (length >= 3 && (head[0] & 0xff) == 0xef && (head[1] & 0xff) == 0xbb && (head[2] & 0xff) == 0xbf) {
+				i = 3;
+			}
+			while (i < length) {
+				while (i < length && (head[i] == ' ' || head[i] == '\t' || head[i] == '\f' || head[i] == '\r' || head[i] == '\n')) {
+					i++;
+				}
+				if (i == length) {
+					break;
+				}
+				if (head[i] == '#' || head[i] == '!') {
+					while (i < length && head[i] != '\n' && head[i] != '\r') {
+						i++;
+					}
+					continue;
+				}
+				int keyStart = i;
+				while (i < length && head[i] != '=' && head[i] != ':' && head[i] != ' ' && head[i] != '\t' && head[i] != '\f'
+						&& head[i] != '\r' && head[i] != '\n' && head[i] != '<') {
+					i++;
+				}
+				if (i == keyStart) {
+					return false;
+				}
+				while (i < length && (head[i] == ' ' || head[i] == '\t' || head[i] == '\f')) {
+					i++;
+				}
+				return i < length && (head[i] == '=' || head[i] == ':');
+			}
+			return true;
+		}
+
+		public PropertyFileParser createParser() {
+			return new PropertyFileParserPropertyMapped();
+		}
+	};
+
+	// formats in sniffing order
+	private static final List<PropertyFileFormat> formats = load();
+
+	private static List<PropertyFileFormat> load() {
+		Map<String, PropertyFileFormat> m = new LinkedHashMap<String, PropertyFileFormat>();
+		m.put(BINARY.getName(), BINARY);
+		m.put(JSON.getName(), JSON);
+		try {
+			for (PropertyFileFormat f : ServiceLoader.load(PropertyFileFormat.class)) {
+				if (m.remove(f.getName()) != null) {
+					LOGGER.log(Level.INFO, "Format:[{0}] replaced by:[{1}]", new Object[] { f.getName(), f.getClass().getName() });
+				} else {
+					LOGGER.log(Level.INFO, "Format:[{0}] registered:[{1}]", new Object[] { f.getName(), f.getClass().getName() });
+				}
+				m.put(f.getName(), f);
+			}
+		} catch (ServiceConfigurationError e) {
+			LOGGER.log(Level.WARNING, "error loading property file formats", e);
+		}
+		if (!m.containsKey(PROPERTIES.getName())) {
+			m.put(PROPERTIES.getName(), PROPERTIES);
+		}
+		return Collections.unmodifiableList(new ArrayList<PropertyFileFormat>(m.values()));
+	}
+
+	/*
+	 * @param propUri URI of a source
+	 * @return format of a given extension of the URI, or null if no format has the extension
+	 */
+	public static PropertyFileFormat forUri(String propUri) {
+		if(propUri==null){
+			throw new InvalidParameterException("propUri paramter is null");
+		}
+		for (PropertyFileFormat f : formats) {
+			for (String extension : f.getExtensions()) {
+				if (propUri.endsWith(extension)) {
+					return f;
+				}
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * @param contentType value of Content-Type header, with optional parameters, or null
+	 * @return format of a given media type, or null if no format has the media type
+	 */
+	public static PropertyFileFormat forContentType(String contentType) {
+		if (contentType == null) {
+			return null;
+		}
+		int semicolon = contentType.indexOf(';');
+		String mediaType = (semicolon < 0 ? contentType : contentType.substring(0, semicolon)).trim();
+		for (PropertyFileFormat f : formats) {
+			for (String type : f.getContentTypes()) {
+				if (type.equalsIgnoreCase(mediaType)) {
+					return f;
+				}
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * @param contentType value of Content-Type header, with optional parameters, or null
+	 * @return true if media type of a given Content-Type is one of documents, e.g. HTML or XML, that are answered
+	 *   instead of a source, such as error or login pages, and that must not be sniffed as a source
+	 */
+	public static boolean isDocumentContentType(String contentType) {
+		if (contentType == null) {
+			return false;
+		}
+		int semicolon = contentType.indexOf(';');
+		String mediaType = (semicolon < 0 ? contentType : contentType.substring(0, semicolon)).trim().toLowerCase(Locale.ROOT);
+		return mediaType.equals("text/html") || mediaType.equals("application/xhtml+xml") || mediaType.equals("text/xml")
+				|| mediaType.equals("application/xml") || mediaType.endsWith("+xml");
+	}
+
+	/*
+	 * @param head first bytes of content of a source
+	 * @param length number of bytes in head
+	 * @return first format, in sniffing order, that accepts the content
+	 * @throws AppPropertiesException if no format accepts the content
+	 */
+	public static PropertyFileFormat sniff(byte[] head, int length) {
+		for (PropertyFileFormat f : formats) {
+			if (f.sniff(head, length)) {
+				return f;
+			}
+		}
+		throw new AppPropertiesException("format of property source content not recognized");
+	}
+
+	/*
+	 * @return all registered formats, in sniffing order
+	 */
+	public static List<PropertyFileFormat> getFormats() {
+		return formats;
+	}
+}
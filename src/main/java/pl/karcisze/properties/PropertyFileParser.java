@@ -1,33 +1,53 @@
 package pl.karcisze.properties;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /*
  * Base class for implementation of parsers for specific property file formats.
  * It assumes that subclasses implement parseInto method, that is supposed to parse file provided by InputStream instance,
  * and to put extracted properties into a given instance of TrialAppProperties class.
  *
+ * Parsers hold no state of a single load: PropertySink and container are passed to every call, so a single instance
+ * serves all loads, including concurrent ones.
+ *
  * @author Krzysztof Arciszewski
  */
 public abstract class PropertyFileParser {
 
-	protected AppPropertiesManagerExtensible appPropertiesManagerExtensible = null;
+	public final static Logger LOGGER = Logger.getLogger("AppProperties");
 
 	/*
-	 * Constructor to create Parser with a given AppPropertiesManagerExtensible instance.
-	 * The instance is used to call back addProperty function.
+	 * Parses given InputStream in order to define Properties and to put them into TrialAppProperties instance
 	 *
-	 * @param appPropertiesManagerExtensible
+	 * @param fi InputStream of data to be parsed
+	 * @param propertySink sink called back to add parsed Properties
+	 * @param appProperties container to put Properties into
 	 */
-	public PropertyFileParser(AppPropertiesManagerExtensible appPropertiesManagerExtensible){
-		this.appPropertiesManagerExtensible = appPropertiesManagerExtensible;
-	}
+	abstract protected void parseInto(InputStream fi, PropertySink propertySink, TrialAppProperties appProperties);
 
 	/*
-	 * Parses given InputStream in order to define Properties and to put them into TrialAppProperties instance
+	 * Parses given file in order to define Properties and to put them into TrialAppProperties instance.
+	 * By default the file is read as InputStream by parseInto. Subclasses may read files in a more efficient way.
 	 *
-	 * @param fi InputStream of data to be parsed
+	 * @param f file to be parsed
+	 * @param propertySink sink called back to add parsed Properties
 	 * @param appProperties container to put Properties into
 	 */
-	abstract protected void parseInto(InputStream fi, TrialAppProperties appProperties);
+	protected void parseFileInto(File f, PropertySink propertySink, TrialAppProperties appProperties) throws IOException {
+		FileInputStream fis = new FileInputStream(f);
+		try {
+			parseInto(fis, propertySink, appProperties);
+		} finally {
+			try {
+				fis.close();
+			} catch (IOException e) {
+				LOGGER.log(Level.ALL, "error closing file input stream" + e);
+			}
+		}
+	}
 }
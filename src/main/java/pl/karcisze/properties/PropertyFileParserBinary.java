@@ -0,0 +1,237 @@
+package pl.karcisze.properties;
+
+import com.amazonaws.regions.Regions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Parser for "*.propbin" files written by PropertyBinaryFormat. Files are memory-mapped and entries are read at offsets
+ * given by the key table. Values are already typed, so they are put into TrialAppProperties without text parsing nor
+ * type conversion. Parsed entries go through PropertySink, so a file can be merged with other sources; a single file
+ * is compiled straight from its tables into CompiledAppProperties by compile.
+ *
+ * @author Krzysztof Arciszewski
+ */
+public class PropertyFileParserBinary extends PropertyFileParser {
+
+	public final static Logger LOGGER = Logger.getLogger("AppProperties");
+
+	// source of data parsed from streams, in error messages
+	private static final String SOURCE_STREAM = "input stream";
+
+	/*
+	 * Parses given InputStream in order to define Properties and to put them into TrialAppProperties instance.
+	 * Stream is read into memory first.
+	 *
+	 * @param fi InputStream of data to be parsed
+	 * @param propertySink sink called back to add parsed Properties
+	 * @param appProperties container to put Properties into
+	 */
+	@Override
+	protected void parseInto(InputStream fi, PropertySink propertySink, TrialAppProperties appProperties) {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		byte[] chunk = new byte[8192];
+		try {
+			int n;
+			while ((n = fi.read(chunk)) > 0) {
+				bos.write(chunk, 0, n);
+			}
+		} catch (IOException e) {
+			throw new AppPropertiesException("error reading *"+PropertyBinaryFormat.EXTENSION+" from input stream",e);
+		}
+		parseBuffer(ByteBuffer.wrap(bos.toByteArray()), SOURCE_STREAM, propertySink, appProperties);
+	}
+
+	/*
+	 * Parses given file in order to define Properties and to put them into TrialAppProperties instance.
+	 * File is memory-mapped.
+	 *
+	 * @param f file to be parsed
+	 * @param propertySink sink called back to add parsed Properties
+	 * @param appProperties container to put Properties into
+	 */
+	@Override
+	protected void parseFileInto(File f, PropertySink propertySink, TrialAppProperties appProperties) throws IOException {
+		parseBuffer(map(f), uri(f), propertySink, appProperties);
+	}
+
+	/*
+	 * @param f file to be mapped
+	 * @return read-only buffer of the whole file. Mapping stays valid after the file is closed.
+	 */
+	static ByteBuffer map(File f) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(f, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new AppPropertiesException("*"+PropertyBinaryFormat.EXTENSION+" file too large to be mapped:["+f+"]");
+			}
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			try {
+				raf.close();
+			} catch (IOException e) {
+				LOGGER.log(Level.ALL, "error closing file" + e);
+			}
+		}
+	}
+
+	private static void parseBuffer(ByteBuffer buffer, String source, PropertySink propertySink, TrialAppProperties appProperties) {
+		try {
+			int count = readHeader(buffer, source);
+			List<String> keys = new ArrayList<String>(count);
+			List<Object> values = new ArrayList<Object>(count);
+			for (int i = 0; i < count; i++) {
+				seekEntry(buffer, i, source);
+				keys.add(readString(buffer, buffer.getShort(), source));
+				// abstraction classes are completed by the sink, as they are declared now
+				buffer.getInt();
+				values.add(readValue(buffer, source));
+			}
+			propertySink.addProperties(appProperties, keys, values);
+		} catch (BufferUnderflowException e) {
+			throw invalid(source, "truncated data", e);
+		} catch (IndexOutOfBoundsException e) {
+			throw invalid(source, "offset out of data", e);
+		} catch (IllegalArgumentException e) {
+			throw invalid(source, e.getMessage(), e);
+		}
+	}
+
+	/*
+	 * Builds read-only snapshot straight from the tables of a buffer: Properties are created from typed values and
+	 * placed in key table order, which is already sorted, and abstraction classes are taken from the closure table.
+	 *
+	 * @param buffer buffer of "*.propbin" data
+	 * @param source URI of the data, for error messages
+	 * @return read-only snapshot of Properties of the buffer
+	 */
+	static CompiledAppProperties compile(ByteBuffer buffer, String source) {
+		try {
+			int count = readHeader(buffer, source);
+			int closureCount = buffer.getInt(8);
+			int closureTable = PropertyBinaryFormat.HEADER_SIZE + 4 * count;
+			if (closureCount < 0 || closureCount > (buffer.limit() - closureTable) / 4) {
+				throw invalid(source, "invalid number of abstraction classes:["+closureCount+"]", null);
+			}
+			int[] closureSizes = new int[closureCount];
+			for (int c = 0; c < closureCount; c++) {
+				closureSizes[c] = buffer.getInt(closureTable + 4 * c);
+			}
+			String[] keys = new String[count];
+			Property[] values = new Property[count];
+			int[] closureOfKey = new int[count];
+			PropertyCompletionHandler handler = PropertyCompletionHandler.getPropertyManager();
+			for (int i = 0; i < count; i++) {
+				seekEntry(buffer, i, source);
+				keys[i] = readString(buffer, buffer.getShort(), source);
+				closureOfKey[i] = buffer.getInt();
+				if (closureOfKey[i] < 0 || closureOfKey[i] >= closureCount) {
+					throw invalid(source, "unknown abstraction class:["+closureOfKey[i]+"]", null);
+				}
+				Object value = readValue(buffer, source);
+				if (value instanceof String && !PropertyCompletionHandler.PROPERTY_TYPE_DEFAULT.equals(handler.getPropertyType(keys[i]))) {
+					// values of types without their own tag are written as Strings
+					value = handler.createCompletedPropertyValue(keys[i], (String) value);
+				}
+				values[i] = PropertyInternPool.internProperty(new Property(keys[i], value));
+			}
+			return new CompiledAppProperties(keys, values, closureOfKey, closureSizes);
+		} catch (BufferUnderflowException e) {
+			throw invalid(source, "truncated data", e);
+		} catch (IndexOutOfBoundsException e) {
+			throw invalid(source, "offset out of data", e);
+		} catch (IllegalArgumentException e) {
+			throw invalid(source, e.getMessage(), e);
+		}
+	}
+
+	/*
+	 * @param f file of "*.propbin" data
+	 * @return URI of the file, in the form it is loaded by
+	 */
+	static String uri(File f) {
+		return "file://" + f.getPath();
+	}
+
+	/*
+	 * @return error of corrupt data of a given source
+	 */
+	private static AppPropertiesException invalid(String source, String reason, Throwable cause) {
+		return new AppPropertiesException("invalid binary property file:["+source+"] - "+reason, cause);
+	}
+
+	/*
+	 * @return number of entries of a buffer, checked to fit key table into the buffer
+	 */
+	private static int readHeader(ByteBuffer buffer, String source) {
+		if (buffer.limit() < PropertyBinaryFormat.HEADER_SIZE || buffer.getInt(0) != PropertyBinaryFormat.MAGIC) {
+			throw invalid(source, "invalid header", null);
+		}
+		int count = buffer.getInt(4);
+		if (count < 0 || count > (buffer.limit() - PropertyBinaryFormat.HEADER_SIZE) / 4) {
+			throw invalid(source, "invalid number of entries:["+count+"]", null);
+		}
+		return count;
+	}
+
+	/*
+	 * Positions a buffer at entry of a given index of key table
+	 */
+	private static void seekEntry(ByteBuffer buffer, int i, String source) {
+		int offset = buffer.getInt(PropertyBinaryFormat.HEADER_SIZE + 4 * i);
+		if (offset < PropertyBinaryFormat.HEADER_SIZE || offset >= buffer.limit()) {
+			throw invalid(source, "entry offset:["+offset+"] out of data", null);
+		}
+		buffer.position(offset);
+	}
+
+	private static Object readValue(ByteBuffer buffer, String source) {
+		byte tag = buffer.get();
+		switch (tag) {
+		case PropertyBinaryFormat.TAG_EMPTY:
+			return Property.PROPERTY_EMPTYVALUE;
+		case PropertyBinaryFormat.TAG_STRING:
+			return readString(buffer, buffer.getInt(), source);
+		case PropertyBinaryFormat.TAG_LONG:
+			return Long.valueOf(buffer.getLong());
+		case PropertyBinaryFormat.TAG_INTEGER:
+			return Integer.valueOf(buffer.getInt());
+		case PropertyBinaryFormat.TAG_DOUBLE:
+			return Double.valueOf(buffer.getDouble());
+		case PropertyBinaryFormat.TAG_BOOLEAN:
+			return Boolean.valueOf(buffer.get() != 0);
+		case PropertyBinaryFormat.TAG_REGIONS:
+			// unknown names are reported as IllegalArgumentException
+			return Regions.fromName(readString(buffer, buffer.getInt(), source));
+		default:
+			throw invalid(source, "unknown type tag:["+tag+"]", null);
+		}
+	}
+
+	private static String readString(ByteBuffer buffer, int length, String source) {
+		if (length < 0 || length > buffer.remaining()) {
+			throw invalid(source, "string length:["+length+"] out of data", null);
+		}
+		if (buffer.hasArray()) {
+			String s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+			buffer.position(buffer.position() + length);
+			return s;
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -1,14 +1,10 @@
 package pl.karcisze.properties;
 
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
-
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.Set;
-import java.util.logging.Level;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.logging.Logger;
 
 /*
@@ -21,41 +17,22 @@ public class PropertyFileParserJSON extends PropertyFileParser {
 	public final static Logger LOGGER = Logger.getLogger("AppProperties");
 
 	/*
-	 * Constructor to create Parser with a given AppPropertiesManagerExtensible instance.
-	 * The instance is used to call back addProperty function.
-	 *
-	 * @param appPropertiesManagerExtensible
-	 */
-	public PropertyFileParserJSON(AppPropertiesManagerExtensible appPropertiesManagerExtensible){
-		super(appPropertiesManagerExtensible);
-	}
-
-	/*
-	 * Parses given InputStream in order to define Properties and to put them into TrialAppProperties instance
+	 * Parses given InputStream in order to define Properties and to put them into TrialAppProperties instance.
+	 * Document is read as a stream of tokens, without building a tree, and nested objects are flattened into dotted
+	 * keys. Key/value pairs are collected as they are read and passed to addProperties as a single batch once the
+	 * whole document has been read, so pairs of the whole document are held in memory before any of them is added.
 	 *
 	 * @param fi InputStream of data to be parsed
+	 * @param propertySink sink called back to add parsed Properties
 	 * @param appProperties container to put Properties into
 	 */
 	@Override
-	protected void parseInto(InputStream fi, TrialAppProperties appProperties) {
-		InputStreamReader reader = new InputStreamReader(fi);
-		JSONParser parser = new JSONParser();
-		Object obj = null;
+	protected void parseInto(InputStream fi, PropertySink propertySink, TrialAppProperties appProperties) {
+		Reader reader = new InputStreamReader(fi, StandardCharsets.UTF_8);
 		try {
-			obj = parser.parse(reader);
+			new PropertyJSONStreamReader(reader, propertySink, appProperties).read();
 		} catch (IOException e) {
 			throw new AppPropertiesException("error parsing *.json from input stream",e);
-		} catch (ParseException e) {
-			throw new AppPropertiesException("error parsing *.json from input stream",e);
-		}
-		JSONObject jsonObj = (JSONObject) obj;
-		Set keys = jsonObj.keySet();
-		for (Object _key: keys) {
-			String key = _key.toString();
-			Object value = jsonObj.get(key);
-
-			LOGGER.log(Level.INFO, "Property to be added: key:["+key+"] value:["+value+"]");
-			appPropertiesManagerExtensible.addProperty(appProperties, key, value);
 		}
 	}
 }
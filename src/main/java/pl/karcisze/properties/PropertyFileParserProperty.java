@@ -2,13 +2,16 @@ package pl.karcisze.properties;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /*
- * Parser for "*.properties" files. It loads Properties from the file and put it into a given AppProperties class instance.
+ * Parser for "*.properties" files. It loads Properties from the file and put it into a given AppProperties class instance,
+ * as a single batch.
  *
  * @author Krzysztof Arciszewski
  */
@@ -16,24 +19,15 @@ public class PropertyFileParserProperty extends PropertyFileParser {
 
 	public final static Logger LOGGER = Logger.getLogger("AppProperties");
 
-	/*
-	 * Constructor to create Parser with a given AppPropertiesManagerExtensible instance.
-	 * The instance is used to call back addProperty function.
-	 *
-	 * @param appPropertiesManagerExtensible
-	 */
-	public PropertyFileParserProperty(AppPropertiesManagerExtensible appPropertiesManagerExtensible){
-		super(appPropertiesManagerExtensible);
-	}
-
 	/*
 	 * Parses given InputStream in order to define Properties and to put them into TrialAppProperties instance
 	 *
 	 * @param fi InputStream of data to be parsed
+	 * @param propertySink sink called back to add parsed Properties
 	 * @param appProperties container to put Properties into
 	 */
 	@Override
-	protected void parseInto(InputStream fi, TrialAppProperties appProperties) {
+	protected void parseInto(InputStream fi, PropertySink propertySink, TrialAppProperties appProperties) {
 		Properties _properties = new Properties();
 		try {
 			_properties.load(fi);
@@ -41,12 +35,16 @@ public class PropertyFileParserProperty extends PropertyFileParser {
 			throw new AppPropertiesException("error parsing *.properties from input stream",e);
 		}
 		Set keys = _properties.keySet();
+		List<String> keyList = new ArrayList<String>(keys.size());
+		List<Object> valueList = new ArrayList<Object>(keys.size());
 		for (Object _key : keys) {
 			String key = _key.toString();
 			String value = (String) _properties.get(key);
 
-			LOGGER.log(Level.INFO, "Property to be added: key:["+key+"] value:["+value+"]");
-			appPropertiesManagerExtensible.addProperty(appProperties, key, value);
+			LOGGER.log(Level.FINE, "Property to be added: key:[{0}] value:[{1}]", new Object[] { key, value });
+			keyList.add(key);
+			valueList.add(value);
 		}
+		propertySink.addProperties(appProperties, keyList, valueList);
 	}
 }
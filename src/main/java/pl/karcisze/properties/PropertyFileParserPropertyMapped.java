@@ -0,0 +1,264 @@
+package pl.karcisze.properties;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Parser for "*.properties" files located by file:// URIs. It memory-maps the file and scans key/value boundaries
+ * directly on the mapped bytes, instead of reading it through java.util.Properties. Only keys and values are
+ * materialized as Strings, each with a single copy of its characters.
+ *
+ * Format is the same as the one of java.util.Properties.load(InputStream): ISO-8859-1 encoding, '#' and '!' comments,
+ * '=', ':' or whitespace separators, escapes (including \\uXXXX) and lines continued by a trailing backslash.
+ *
+ * Streams that are not files are parsed by PropertyFileParserProperty.
+ *
+ * @author Krzysztof Arciszewski
+ */
+public class PropertyFileParserPropertyMapped extends PropertyFileParserProperty {
+
+	public final static Logger LOGGER = Logger.getLogger("AppProperties");
+
+	/*
+	 * Parses given file in order to define Properties and to put them into TrialAppProperties instance
+	 *
+	 * @param f file to be parsed
+	 * @param propertySink sink called back to add parsed Properties
+	 * @param appProperties container to put Properties into
+	 */
+	@Override
+	protected void parseFileInto(File f, PropertySink propertySink, TrialAppProperties appProperties) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(f, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new AppPropertiesException("*.properties file too large to be mapped:["+f+"]");
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			new Scanner(buffer).scanInto(propertySink, appProperties);
+		} finally {
+			try {
+				raf.close();
+			} catch (IOException e) {
+				LOGGER.log(Level.ALL, "error closing file" + e);
+			}
+		}
+	}
+
+	/*
+	 * Scanner of a single mapped file. Characters of keys and values are decoded into a reused array,
+	 * and each String is created from the array once the key or value ends.
+	 */
+	private static class Scanner {
+
+		private final ByteBuffer buffer;
+		private final int limit;
+		private int position = 0;
+		private char[] chars = new char[256];
+		private int length = 0;
+
+		Scanner(ByteBuffer buffer) {
+			this.buffer = buffer;
+			this.limit = buffer.limit();
+		}
+
+		void scanInto(PropertySink propertySink, TrialAppProperties appProperties) {
+			List<String> keys = new ArrayList<String>();
+			List<Object> values = new ArrayList<Object>();
+			while (true) {
+				skipLeadingWhitespace();
+				if (position >= limit) {
+					propertySink.addProperties(appProperties, keys, values);
+					return;
+				}
+				int c = at(position);
+				if (c == '#' || c == '!') {
+					skipLine();
+					continue;
+				}
+				String key = scanKey();
+				skipBlanks();
+				if (position < limit && (at(position) == '=' || at(position) == ':')) {
+					position++;
+				}
+				skipBlanks();
+				String value = scanValue();
+				LOGGER.log(Level.FINE, "Property to be added: key:[{0}] value:[{1}]", new Object[] { key, value });
+				keys.add(key);
+				values.add(value);
+			}
+		}
+
+		private int at(int i) {
+			return buffer.get(i) & 0xff;
+		}
+
+		/*
+		 * Skips whitespace and empty lines before logical line
+		 */
+		private void skipLeadingWhitespace() {
+			while (position < limit) {
+				int c = at(position);
+				if (c == ' ' || c == '\t' || c == '\f' || c == '\r' || c == '\n') {
+					position++;
+				} else {
+					return;
+				}
+			}
+		}
+
+		/*
+		 * Skips rest of natural line, with its terminator. Comment lines are never continued.
+		 */
+		private void skipLine() {
+			while (position < limit) {
+				int c = at(position++);
+				if (c == '\n') {
+					return;
+				}
+				if (c == '\r') {
+					if (position < limit && at(position) == '\n') {
+						position++;
+					}
+					return;
+				}
+			}
+		}
+
+		/*
+		 * Skips whitespace within logical line, including line continuations
+		 */
+		private void skipBlanks() {
+			while (position < limit) {
+				int c = at(position);
+				if (c == ' ' || c == '\t' || c == '\f') {
+					position++;
+				} else if (c == '\\' && isContinuation(position)) {
+					skipContinuation();
+				} else {
+					return;
+				}
+			}
+		}
+
+		/*
+		 * @return true if backslash at a given position is the last character of natural line
+		 */
+		private boolean isContinuation(int backslash) {
+			if (backslash + 1 >= limit) {
+				return true;
+			}
+			int c = at(backslash + 1);
+			return c == '\r' || c == '\n';
+		}
+
+		/*
+		 * Skips backslash, line terminator, and leading whitespace of the next natural line
+		 */
+		private void skipContinuation() {
+			position++;
+			if (position < limit && at(position) == '\r') {
+				position++;
+			}
+			if (position < limit && at(position) == '\n') {
+				position++;
+			}
+			while (position < limit) {
+				int c = at(position);
+				if (c == ' ' || c == '\t' || c == '\f') {
+					position++;
+				} else {
+					return;
+				}
+			}
+		}
+
+		private String scanKey() {
+			length = 0;
+			while (position < limit) {
+				int c = at(position);
+				if (c == '=' || c == ':' || c == ' ' || c == '\t' || c == '\f' || c == '\r' || c == '\n') {
+					break;
+				}
+				if (c == '\\') {
+					if (isContinuation(position)) {
+						skipContinuation();
+					} else {
+						appendEscape();
+					}
+				} else {
+					append((char) c);
+					position++;
+				}
+			}
+			return new String(chars, 0, length);
+		}
+
+		private String scanValue() {
+			length = 0;
+			while (position < limit) {
+				int c = at(position);
+				if (c == '\r' || c == '\n') {
+					break;
+				}
+				if (c == '\\') {
+					if (isContinuation(position)) {
+						skipContinuation();
+					} else {
+						appendEscape();
+					}
+				} else {
+					append((char) c);
+					position++;
+				}
+			}
+			return new String(chars, 0, length);
+		}
+
+		/*
+		 * Decodes escape sequence starting with backslash at current position
+		 */
+		private void appendEscape() {
+			int c = at(position + 1);
+			position += 2;
+			switch (c) {
+			case 't': append('\t'); break;
+			case 'n': append('\n'); break;
+			case 'r': append('\r'); break;
+			case 'f': append('\f'); break;
+			case 'u':
+				int u = 0;
+				for (int i = 0; i < 4; i++) {
+					int d = position < limit ? Character.digit(at(position), 16) : -1;
+					if (d < 0) {
+						throw new AppPropertiesException("error parsing *.properties: malformed \\uxxxx encoding at byte:["+position+"]");
+					}
+					u = (u << 4) | d;
+					position++;
+				}
+				append((char) u);
+				break;
+			default:
+				append((char) c);
+			}
+		}
+
+		private void append(char c) {
+			if (length == chars.length) {
+				char[] grown = new char[chars.length * 2];
+				System.arraycopy(chars, 0, grown, 0, length);
+				chars = grown;
+			}
+			chars[length++] = c;
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package pl.karcisze.properties;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Parser for sources of any format registered in PropertyFileFormats. Format is selected by Content-Type, if it is
+ * known, or by sniffing the first bytes of content, and parsing is delegated to the parser of the format.
+ *
+ * Parsers of formats are created once, on first use, and reused, so the instance is meant to be kept for many loads,
+ * whatever PropertySink they add Properties through. It is thread safe.
+ *
+ * @author Krzysztof Arciszewski
+ */
+public class PropertyFileParserSniffing extends PropertyFileParser {
+
+	public final static Logger LOGGER = Logger.getLogger("AppProperties");
+
+	private final ConcurrentMap<PropertyFileFormat, PropertyFileParser> parsers = new ConcurrentHashMap<PropertyFileFormat, PropertyFileParser>();
+
+	/*
+	 * @param format format of sources
+	 * @return parser of a given format, created on first call
+	 */
+	public PropertyFileParser getParser(PropertyFileFormat format) {
+		PropertyFileParser parser = parsers.get(format);
+		if (parser == null) {
+			parser = format.createParser();
+			PropertyFileParser existing = parsers.putIfAbsent(format, parser);
+			if (existing != null) {
+				parser = existing;
+			}
+		}
+		return parser;
+	}
+
+	/*
+	 * Parses given InputStream in order to define Properties and to put them into TrialAppProperties instance.
+	 * Format is selected by sniffing the first bytes of the stream.
+	 *
+	 * @param fi InputStream of data to be parsed
+	 * @param propertySink sink called back to add parsed Properties
+	 * @param appProperties container to put Properties into
+	 */
+	@Override
+	protected void parseInto(InputStream fi, PropertySink propertySink, TrialAppProperties appProperties) {
+		InputStream is = fi.markSupported() ? fi : new BufferedInputStream(fi, Math.max(8192, PropertyFileFormats.SNIFF_LENGTH));
+		byte[] head = new byte[PropertyFileFormats.SNIFF_LENGTH];
+		int length;
+		try {
+			is.mark(head.length);
+			length = readHead(is, head);
+			is.reset();
+		} catch (IOException e) {
+			throw new AppPropertiesException("error reading property source from input stream",e);
+		}
+		select(PropertyFileFormats.sniff(head, length)).parseInto(is, propertySink, appProperties);
+	}
+
+	/*
+	 * Parses given InputStream in order to define Properties and to put them into TrialAppProperties instance.
+	 * Format is selected by a given Content-Type, or by sniffing if no format has the Content-Type.
+	 * Documents, e.g. HTML error pages, are rejected unless a registered format has their Content-Type.
+	 *
+	 * @param fi InputStream of data to be parsed
+	 * @param contentType Content-Type the data was received with, or null
+	 * @param propertySink sink called back to add parsed Properties
+	 * @param appProperties container to put Properties into
+	 * @throws AppPropertiesException if Content-Type is one of documents that no format has
+	 */
+	protected void parseInto(InputStream fi, String contentType, PropertySink propertySink, TrialAppProperties appProperties) {
+		PropertyFileFormat format = PropertyFileFormats.forContentType(contentType);
+		if (format == null && PropertyFileFormats.isDocumentContentType(contentType)) {
+			throw new AppPropertiesException("property source of Content-Type:["+contentType+"] rejected");
+		}
+		if (format == null) {
+			parseInto(fi, propertySink, appProperties);
+		} else {
+			select(format).parseInto(fi, propertySink, appProperties);
+		}
+	}
+
+	/*
+	 * Parses given file in order to define Properties and to put them into TrialAppProperties instance.
+	 * Format is selected by sniffing the first bytes of the file, and the file is then parsed as a file,
+	 * e.g. memory-mapped.
+	 *
+	 * @param f file to be parsed
+	 * @param propertySink sink called back to add parsed Properties
+	 * @param appProperties container to put Properties into
+	 */
+	@Override
+	protected void parseFileInto(File f, PropertySink propertySink, TrialAppProperties appProperties) throws IOException {
+		byte[] head = new byte[PropertyFileFormats.SNIFF_LENGTH];
+		int length;
+		FileInputStream fis = new FileInputStream(f);
+		try {
+			length = readHead(fis, head);
+		} finally {
+			try {
+				fis.close();
+			} catch (IOException e) {
+				LOGGER.log(Level.ALL, "error closing file input stream" + e);
+			}
+		}
+		select(PropertyFileFormats.sniff(head, length)).parseFileInto(f, propertySink, appProperties);
+	}
+
+	private PropertyFileParser select(PropertyFileFormat format) {
+		LOGGER.log(Level.INFO, "format:[{0}] selected for property source without known extension", format.getName());
+		return getParser(format);
+	}
+
+	private static int readHead(InputStream is, byte[] head) throws IOException {
+		int length = 0;
+		int n;
+		while (length < head.length && (n = is.read(head, length, head.length - length)) > 0) {
+			length += n;
+		}
+		return length;
+	}
+}
@@ -0,0 +1,91 @@
+package pl.karcisze.properties;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Parser for sources located by "env:" and "sysprop:" URIs - environment variables and system properties of the JVM.
+ * Part of URI after the scheme is an optional name prefix, e.g. "env:APP_" or "sysprop:app.". Only variables whose
+ * names start with the prefix are loaded, and the prefix is stripped from their names. Prefix is matched as keys are,
+ * so '.' and '_' are equivalent and case does not matter.
+ *
+ * Names are mapped to keys declared in PropertyCompletionHandler, so "HIBERNATE_SHOW_SQL" is loaded as
+ * "hibernate.show_sql", with its type and abstraction class. Names of undeclared keys are loaded as they are.
+ *
+ * Variables are read straight from the environment and system properties views. Only variables that match the prefix
+ * are collected.
+ *
+ * @author Krzysztof Arciszewski
+ */
+public class PropertyFileParserSystem extends PropertyFileParser {
+
+	public final static Logger LOGGER = Logger.getLogger("AppProperties");
+
+	public static final String URI_ENV = "env:";
+	public static final String URI_SYSPROP = "sysprop:";
+
+	private final PropertyCompletionHandler propertyCompletionHandler = PropertyCompletionHandler.getPropertyManager();
+
+	/*
+	 * @param propUri URI of a source
+	 * @return true if the URI locates environment variables or system properties
+	 */
+	public static boolean isSystemUri(String propUri) {
+		return propUri.startsWith(URI_ENV) || propUri.startsWith(URI_SYSPROP);
+	}
+
+	/*
+	 * System sources are not read from streams
+	 */
+	@Override
+	protected void parseInto(InputStream fi, PropertySink propertySink, TrialAppProperties appProperties) {
+		throw new AppPropertiesException("environment variables and system properties can not be read from stream");
+	}
+
+	/*
+	 * Reads environment variables or system properties located by a given URI, and puts them into TrialAppProperties instance
+	 *
+	 * @param propUri "env:" or "sysprop:" URI, with optional name prefix
+	 * @param propertySink sink called back to add parsed Properties
+	 * @param appProperties container to put Properties into
+	 */
+	protected void parseSourceInto(String propUri, PropertySink propertySink, TrialAppProperties appProperties) {
+		List<String> keys = new ArrayList<String>();
+		List<Object> values = new ArrayList<Object>();
+		if (propUri.startsWith(URI_ENV)) {
+			collect(System.getenv(), propUri.substring(URI_ENV.length()), keys, values);
+		} else if (propUri.startsWith(URI_SYSPROP)) {
+			Properties systemProperties = System.getProperties();
+			// system properties are a Hashtable, which may be modified concurrently
+			synchronized (systemProperties) {
+				collect(systemProperties, propUri.substring(URI_SYSPROP.length()), keys, values);
+			}
+		} else {
+			throw new AppPropertiesException("unsupported system source URI:["+propUri+"]");
+		}
+		LOGGER.log(Level.INFO, "{0} variables matched URI:[{1}]", new Object[] { keys.size(), propUri });
+		propertySink.addProperties(appProperties, keys, values);
+	}
+
+	private void collect(Map<?, ?> variables, String prefix, List<String> keys, List<Object> values) {
+		for (Map.Entry<?, ?> e : variables.entrySet()) {
+			if (!(e.getKey() instanceof String) || !(e.getValue() instanceof String)) {
+				continue;
+			}
+			String name = (String) e.getKey();
+			if (name.length() == prefix.length() || !PropertyKeyIndex.canonicalStartsWith(name, prefix)) {
+				continue;
+			}
+			name = name.substring(prefix.length());
+			String key = propertyCompletionHandler.getDeclaredKey(name);
+			LOGGER.log(Level.FINE, "Property to be added: key:[{0}] value:[{1}]", new Object[] { key != null ? key : name, e.getValue() });
+			keys.add(key != null ? key : name);
+			values.add(e.getValue());
+		}
+	}
+}
@@ -0,0 +1,137 @@
+package pl.karcisze.properties;
+
+import java.lang.ref.WeakReference;
+import java.security.InvalidParameterException;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.logging.Logger;
+
+/*
+ * Pool of canonical instances of keys, values and Properties, shared by all AppProperties containers of the JVM.
+ * Containers holding equal Properties, e.g. one per tenant, share a single instance of each of them, so heap usage
+ * scales with the number of distinct Properties rather than with the number of containers.
+ *
+ * Pool holds its instances weakly, so instances no longer used by any container are garbage collected.
+ * Pool is split into stripes by hash of instances, each guarded by its own lock, so containers loaded concurrently
+ * rarely wait for each other.
+ * Only immutable objects are pooled:
+ * - Strings up to MAX_STRING_LENGTH characters,
+ * - Long, Integer and Double values; Booleans are replaced by Boolean.TRUE or Boolean.FALSE,
+ * - Properties, with their keys and values pooled as well. LazyProperty instances are never pooled, as they are
+ *   mutable until converted.
+ * Values of other types, e.g. enums like com.amazonaws.regions.Regions, are returned as they are.
+ *
+ * This is supporting class for TrialAppProperties.
+ *
+ * @author Krzysztof Arciszewski
+ */
+public class PropertyInternPool {
+
+	public final static Logger LOGGER = Logger.getLogger("AppProperties");
+
+	// longer Strings are unlikely to be shared, and are not pooled
+	public static final int MAX_STRING_LENGTH = 128;
+
+	// number of stripes, a power of two
+	private static final int STRIPES = 32;
+
+	private static final Stripe[] stripes = new Stripe[STRIPES];
+	static {
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new Stripe();
+		}
+	}
+
+	// non-generic type of stripes, so they are held in an array without unchecked conversion
+	private static final class Stripe extends WeakHashMap<Object, WeakReference<Object>> {
+	}
+
+	/*
+	 * @param key key of Property
+	 * @return canonical instance of the key
+	 */
+	public static String internKey(String key) {
+		if(key==null){
+			throw new InvalidParameterException("key paramter is null");
+		}
+		return key.length() > MAX_STRING_LENGTH ? key : intern(key);
+	}
+
+	/*
+	 * @param value value of Property
+	 * @return canonical instance of the value, or the value itself if values of its type are not pooled
+	 */
+	public static Object internValue(Object value) {
+		if(value==null){
+			throw new InvalidParameterException("value paramter is null");
+		}
+		if (value instanceof Boolean) {
+			return Boolean.valueOf((Boolean) value);
+		}
+		if (value instanceof String) {
+			return ((String) value).length() > MAX_STRING_LENGTH ? value : intern(value);
+		}
+		if (value instanceof Long || value instanceof Integer || value instanceof Double) {
+			return intern(value);
+		}
+		return value;
+	}
+
+	/*
+	 * @param property Property to be registered in a container
+	 * @return canonical instance of Property equal to the given one, or the given one if it is a LazyProperty
+	 */
+	public static Property internProperty(Property property) {
+		if(property==null){
+			throw new InvalidParameterException("property paramter is null");
+		}
+		if (property instanceof LazyProperty) {
+			return property;
+		}
+		Map<Object, WeakReference<Object>> stripe = stripe(property);
+		synchronized (stripe) {
+			Object canonical = lookup(stripe, property);
+			if (canonical != null) {
+				return (Property) canonical;
+			}
+		}
+		// key and value are interned in their own stripes, so no two stripe locks are ever held together
+		return intern(new Property(internKey(property.getKey()), internValue(property.getValue())));
+	}
+
+	/*
+	 * @return number of instances in the pool, including those not collected yet
+	 */
+	public static int size() {
+		int size = 0;
+		for (Map<Object, WeakReference<Object>> stripe : stripes) {
+			synchronized (stripe) {
+				size += stripe.size();
+			}
+		}
+		return size;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T intern(T o) {
+		Map<Object, WeakReference<Object>> stripe = stripe(o);
+		synchronized (stripe) {
+			Object canonical = lookup(stripe, o);
+			if (canonical == null) {
+				stripe.put(o, new WeakReference<Object>(o));
+				return o;
+			}
+			return (T) canonical;
+		}
+	}
+
+	private static Map<Object, WeakReference<Object>> stripe(Object o) {
+		int h = o.hashCode();
+		return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+	}
+
+	private static Object lookup(Map<Object, WeakReference<Object>> stripe, Object o) {
+		WeakReference<Object> ref = stripe.get(o);
+		return ref == null ? null : ref.get();
+	}
+}
@@ -0,0 +1,408 @@
+package pl.karcisze.properties;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Streaming, token based reader of JSON property documents. It reads characters through its own buffer and collects
+ * key/value pairs, without building a tree of the document. Pairs of the whole document are passed to
+ * PropertySink.addProperties as a single batch, once the document has been read.
+ *
+ * Values are emitted as follows:
+ * - strings as String,
+ * - integral numbers as Long, other numbers as Double, so they are not converted again if their type matches,
+ * - true and false as Boolean,
+ * - null as empty Property value, so the Property is registered as unset,
+ * - nested objects are flattened into dotted keys, e.g. {"hibernate": {"show_sql": true}} gives "hibernate.show_sql",
+ * - arrays as their compact JSON text.
+ *
+ * One instance reads one document. This is supporting class for PropertyFileParserJSON.
+ *
+ * @author Krzysztof Arciszewski
+ */
+public class PropertyJSONStreamReader {
+
+	public final static Logger LOGGER = Logger.getLogger("AppProperties");
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final Reader reader;
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private int position = 0;
+	private int limit = 0;
+	private long offset = 0;
+	// reused for strings, numbers and array texts
+	private final StringBuilder text = new StringBuilder();
+
+	private final PropertySink propertySink;
+	private final TrialAppProperties appProperties;
+	private final List<String> keys = new ArrayList<String>();
+	private final List<Object> values = new ArrayList<Object>();
+
+	/*
+	 * @param reader characters of JSON document
+	 * @param propertySink sink to call back addProperties with all key/value pairs
+	 * @param appProperties container to put Properties into
+	 */
+	public PropertyJSONStreamReader(Reader reader, PropertySink propertySink,
+			TrialAppProperties appProperties) {
+		this.reader = reader;
+		this.propertySink = propertySink;
+		this.appProperties = appProperties;
+	}
+
+	/*
+	 * Reads whole document. Document must be a JSON object.
+	 */
+	public void read() throws IOException {
+		if (nextToken() != '{') {
+			throw error("JSON object expected");
+		}
+		readObject("");
+		if (nextToken() != -1) {
+			throw error("end of document expected");
+		}
+		propertySink.addProperties(appProperties, keys, values);
+	}
+
+	/*
+	 * Reads members of object which opening brace has been consumed already.
+	 *
+	 * @param prefix key prefix of members, empty or ending with '.'
+	 */
+	private void readObject(String prefix) throws IOException {
+		int c = nextToken();
+		if (c == '}') {
+			return;
+		}
+		while (true) {
+			if (c != '"') {
+				throw error("member name expected");
+			}
+			String key = prefix + readString();
+			if (nextToken() != ':') {
+				throw error("':' expected");
+			}
+			readValue(key);
+			c = nextToken();
+			if (c == '}') {
+				return;
+			}
+			if (c != ',') {
+				throw error("',' or '}' expected");
+			}
+			c = nextToken();
+		}
+	}
+
+	private void readValue(String key) throws IOException {
+		int c = nextToken();
+		Object value;
+		switch (c) {
+		case '{':
+			readObject(key + ".");
+			return;
+		case '"':
+			value = readString();
+			break;
+		case '[':
+			text.setLength(0);
+			text.append('[');
+			readArrayText();
+			value = text.toString();
+			break;
+		case 't':
+			expect("rue");
+			value = Boolean.TRUE;
+			break;
+		case 'f':
+			expect("alse");
+			value = Boolean.FALSE;
+			break;
+		case 'n':
+			expect("ull");
+			value = Property.PROPERTY_EMPTYVALUE;
+			break;
+		default:
+			if (c == '-' || (c >= '0' && c <= '9')) {
+				value = readNumber(c);
+			} else {
+				throw error("value expected");
+			}
+		}
+		LOGGER.log(Level.FINE, "Property to be added: key:[{0}] value:[{1}]", new Object[] { key, value });
+		keys.add(key);
+		values.add(value);
+	}
+
+	/*
+	 * Reads string which opening quote has been consumed already.
+	 */
+	private String readString() throws IOException {
+		text.setLength(0);
+		appendString();
+		return text.toString();
+	}
+
+	private void appendString() throws IOException {
+		while (true) {
+			int c = readChar();
+			if (c == '"') {
+				return;
+			}
+			if (c == -1) {
+				throw error("unterminated string");
+			}
+			if (c == '\\') {
+				c = readChar();
+				switch (c) {
+				case '"': case '\\': case '/':
+					text.append((char) c);
+					break;
+				case 'b': text.append('\b'); break;
+				case 'f': text.append('\f'); break;
+				case 'n': text.append('\n'); break;
+				case 'r': text.append('\r'); break;
+				case 't': text.append('\t'); break;
+				case 'u':
+					int u = 0;
+					for (int i = 0; i < 4; i++) {
+						int d = Character.digit(readChar(), 16);
+						if (d < 0) {
+							throw error("invalid unicode escape");
+						}
+						u = (u << 4) | d;
+					}
+					text.append((char) u);
+					break;
+				default:
+					throw error("invalid escape");
+				}
+			} else {
+				text.append((char) c);
+			}
+		}
+	}
+
+	/*
+	 * Reads number which first character has been consumed already.
+	 *
+	 * @return Long if the number is integral and fits into long, Double otherwise
+	 */
+	private Object readNumber(int first) throws IOException {
+		text.setLength(0);
+		text.append((char) first);
+		boolean integral = true;
+		while (true) {
+			int c = peek();
+			if (c >= '0' && c <= '9' || c == '-' || c == '+') {
+				text.append((char) readChar());
+			} else if (c == '.' || c == 'e' || c == 'E') {
+				integral = false;
+				text.append((char) readChar());
+			} else {
+				break;
+			}
+		}
+		try {
+			if (integral) {
+				try {
+					return Long.valueOf(parseLong());
+				} catch (NumberFormatException e) {
+					// out of long range
+				}
+			}
+			return Double.valueOf(text.toString());
+		} catch (NumberFormatException e) {
+			throw error("invalid number:[" + text + "]");
+		}
+	}
+
+	/*
+	 * Parses integral number kept in text without creating a String.
+	 */
+	private long parseLong() {
+		int length = text.length();
+		boolean negative = text.charAt(0) == '-';
+		int i = negative ? 1 : 0;
+		if (i == length) {
+			throw new NumberFormatException();
+		}
+		long value = 0;
+		for (; i < length; i++) {
+			int d = text.charAt(i) - '0';
+			if (d < 0 || d > 9 || value < (Long.MIN_VALUE + d) / 10) {
+				throw new NumberFormatException();
+			}
+			value = value * 10 - d;
+		}
+		if (!negative) {
+			if (value == Long.MIN_VALUE) {
+				throw new NumberFormatException();
+			}
+			value = -value;
+		}
+		return value;
+	}
+
+	/*
+	 * Appends compact text of array which opening bracket has been consumed and appended already.
+	 */
+	private void readArrayText() throws IOException {
+		int c = nextToken();
+		if (c == ']') {
+			text.append(']');
+			return;
+		}
+		while (true) {
+			appendValueText(c);
+			c = nextToken();
+			if (c == ']') {
+				text.append(']');
+				return;
+			}
+			if (c != ',') {
+				throw error("',' or ']' expected");
+			}
+			text.append(',');
+			c = nextToken();
+		}
+	}
+
+	private void appendValueText(int c) throws IOException {
+		switch (c) {
+		case '"':
+			text.append('"');
+			int from = text.length();
+			appendString();
+			escape(from);
+			text.append('"');
+			return;
+		case '[':
+			text.append('[');
+			readArrayText();
+			return;
+		case '{':
+			text.append('{');
+			c = nextToken();
+			if (c == '}') {
+				text.append('}');
+				return;
+			}
+			while (true) {
+				if (c != '"') {
+					throw error("member name expected");
+				}
+				appendValueText(c);
+				if (nextToken() != ':') {
+					throw error("':' expected");
+				}
+				text.append(':');
+				appendValueText(nextToken());
+				c = nextToken();
+				if (c == '}') {
+					text.append('}');
+					return;
+				}
+				if (c != ',') {
+					throw error("',' or '}' expected");
+				}
+				text.append(',');
+				c = nextToken();
+			}
+		case 't':
+			expect("rue");
+			text.append("true");
+			return;
+		case 'f':
+			expect("alse");
+			text.append("false");
+			return;
+		case 'n':
+			expect("ull");
+			text.append("null");
+			return;
+		default:
+			if (c == '-' || (c >= '0' && c <= '9')) {
+				text.append((char) c);
+				while ((c = peek()) >= '0' && c <= '9' || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+					text.append((char) readChar());
+				}
+				return;
+			}
+			throw error("value expected");
+		}
+	}
+
+	/*
+	 * Escapes characters of string appended to text from a given index, as required by JSON.
+	 */
+	private void escape(int from) {
+		for (int i = from; i < text.length(); i++) {
+			char ch = text.charAt(i);
+			String escaped = null;
+			if (ch == '"' || ch == '\\') {
+				escaped = "\\" + ch;
+			} else if (ch < 0x20) {
+				escaped = String.format("\\u%04x", (int) ch);
+			}
+			if (escaped != null) {
+				text.replace(i, i + 1, escaped);
+				i += escaped.length() - 1;
+			}
+		}
+	}
+
+	private void expect(String rest) throws IOException {
+		for (int i = 0; i < rest.length(); i++) {
+			if (readChar() != rest.charAt(i)) {
+				throw error("invalid literal");
+			}
+		}
+	}
+
+	/*
+	 * @return next character that is not a whitespace, or -1 at the end of document
+	 */
+	private int nextToken() throws IOException {
+		int c;
+		do {
+			c = readChar();
+		} while (c == ' ' || c == '\t' || c == '\n' || c == '\r');
+		return c;
+	}
+
+	private int readChar() throws IOException {
+		if (position == limit && !fill()) {
+			return -1;
+		}
+		return buffer[position++];
+	}
+
+	private int peek() throws IOException {
+		if (position == limit && !fill()) {
+			return -1;
+		}
+		return buffer[position];
+	}
+
+	private boolean fill() throws IOException {
+		offset += limit;
+		position = 0;
+		limit = 0;
+		int n = reader.read(buffer, 0, buffer.length);
+		if (n <= 0) {
+			return false;
+		}
+		limit = n;
+		return true;
+	}
+
+	private AppPropertiesException error(String message) {
+		return new AppPropertiesException("error parsing *.json: " + message + " at character:[" + (offset + position) + "]");
+	}
+}
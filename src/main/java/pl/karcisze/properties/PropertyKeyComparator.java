@@ -5,7 +5,8 @@ import java.util.Comparator;
 import java.util.logging.Logger;
 
 /*
- * Comparator for Property keys. Keys are simple String and this comparator compares them in case insensitive way
+ * Comparator for Property keys. Keys are simple String and this comparator compares them in case insensitive way.
+ * '.' and '_' are treated as equivalent, so the comparator is consistent with PropertyKeyIndex.
  *
  * @author Krzysztof Arciszewski
  */
@@ -14,7 +15,8 @@ public class PropertyKeyComparator implements Comparator<String> {
 	public final static Logger LOGGER = Logger.getLogger("AppProperties");
 
 	/*
-	 * Method to compare two Property keys in case insensitive way
+	 * Method to compare two Property keys in case insensitive way. Keys are compared char by char in their
+	 * canonical form, without creating upper case copies of them.
 	 *
 	 * @param arg0 param to compare
 	 * @param arg1 param to compare
@@ -28,8 +30,16 @@ public class PropertyKeyComparator implements Comparator<String> {
 		if(arg1==null){
 			throw new InvalidParameterException("arg1 paramter is null");
 		}
-		String arg0Upper = arg0.toUpperCase();
-		String arg1Upper = arg1.toUpperCase();
-		return arg0Upper.compareTo(arg1Upper);
+		int length0 = arg0.length();
+		int length1 = arg1.length();
+		int length = Math.min(length0, length1);
+		for (int i = 0; i < length; i++) {
+			char c0 = PropertyKeyIndex.canonicalChar(arg0.charAt(i));
+			char c1 = PropertyKeyIndex.canonicalChar(arg1.charAt(i));
+			if (c0 != c1) {
+				return c0 - c1;
+			}
+		}
+		return length0 - length1;
 	}
 }
@@ -0,0 +1,243 @@
+package pl.karcisze.properties;
+
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/*
+ * Hash index of Properties by their canonical key. Canonical form of a key is case insensitive and treats '.' and '_'
+ * as the same character, as required by AppProperties.get contract. So "jpa.showSQL", "jpa_showsql" and "JPA_showSql"
+ * all address the same entry.
+ * Keys are canonicalized char by char while hashing and comparing, so no String is created on lookup.
+ * Index uses open addressing with linear probing over parallel arrays of keys, hashes and Properties.
+ *
+ * This is supporting class for TrialAppProperties.
+ *
+ * @author Krzysztof Arciszewski
+ */
+public class PropertyKeyIndex {
+
+	public final static Logger LOGGER = Logger.getLogger("AppProperties");
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private String[] keys = new String[INITIAL_CAPACITY];
+	private int[] hashes = new int[INITIAL_CAPACITY];
+	private Property[] values = new Property[INITIAL_CAPACITY];
+	private int size = 0;
+
+	/*
+	 * @param c character of a Property key
+	 * @return canonical form of the character: upper case, with '.' mapped to '_'
+	 */
+	public static char canonicalChar(char c) {
+		if (c == '.') {
+			return '_';
+		}
+		if (c >= 'a' && c <= 'z') {
+			return (char) (c - ('a' - 'A'));
+		}
+		if (c < 128) {
+			return c;
+		}
+		return Character.toUpperCase(c);
+	}
+
+	/*
+	 * @param key Property key
+	 * @return hash code of canonical form of the key
+	 */
+	public static int canonicalHash(String key) {
+		int h = 0;
+		int length = key.length();
+		for (int i = 0; i < length; i++) {
+			h = 31 * h + canonicalChar(key.charAt(i));
+		}
+		return h ^ (h >>> 16);
+	}
+
+	/*
+	 * @param key Property key
+	 * @return 64 bit FNV-1a hash of canonical form of the key, finalized with murmur3 mix so all bits are usable.
+	 *         It is independent of canonicalHash.
+	 */
+	public static long canonicalHash64(String key) {
+		long h = 0xcbf29ce484222325L;
+		int length = key.length();
+		for (int i = 0; i < length; i++) {
+			h ^= canonicalChar(key.charAt(i));
+			h *= 0x100000001b3L;
+		}
+		h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+		h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return h ^ (h >>> 33);
+	}
+
+	/*
+	 * @return true if both keys have the same canonical form
+	 */
+	public static boolean canonicalEquals(String key0, String key1) {
+		int length = key0.length();
+		if (length != key1.length()) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (canonicalChar(key0.charAt(i)) != canonicalChar(key1.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * @return true if canonical form of the key starts with canonical form of the prefix
+	 */
+	public static boolean canonicalStartsWith(String key, String prefix) {
+		int length = prefix.length();
+		if (length > key.length()) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (canonicalChar(key.charAt(i)) != canonicalChar(prefix.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * @param key Property key, in any of its equivalent forms
+	 * @return Property registered for canonical form of the key, or null if there is no such Property
+	 */
+	public Property get(String key) {
+		if (key == null) {
+			throw new InvalidParameterException("key paramter is null");
+		}
+		int h = canonicalHash(key);
+		int mask = keys.length - 1;
+		for (int i = h & mask; keys[i] != null; i = (i + 1) & mask) {
+			if (hashes[i] == h && canonicalEquals(keys[i], key)) {
+				return values[i];
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * @return true if Property of canonical form of the key is registered
+	 */
+	public boolean containsKey(String key) {
+		return get(key) != null;
+	}
+
+	/*
+	 * Registers Property under canonical form of the key. Property registered for the same canonical key is replaced.
+	 *
+	 * @param key Property key, in any of its equivalent forms
+	 * @param property Property to be registered
+	 * @return Property replaced, or null if the key was not registered before
+	 */
+	public Property put(String key, Property property) {
+		if (key == null) {
+			throw new InvalidParameterException("key paramter is null");
+		}
+		if (property == null) {
+			throw new InvalidParameterException("property paramter is null");
+		}
+		int h = canonicalHash(key);
+		int mask = keys.length - 1;
+		int i = h & mask;
+		for (; keys[i] != null; i = (i + 1) & mask) {
+			if (hashes[i] == h && canonicalEquals(keys[i], key)) {
+				Property replaced = values[i];
+				values[i] = property;
+				return replaced;
+			}
+		}
+		keys[i] = key;
+		hashes[i] = h;
+		values[i] = property;
+		size++;
+		if (size * 2 > keys.length) {
+			resize(keys.length * 2);
+		}
+		return null;
+	}
+
+	/*
+	 * Removes Property registered under canonical form of the key. Entries following the removed one in its probe
+	 * sequence are shifted back, so no tombstones are left behind.
+	 *
+	 * @param key Property key, in any of its equivalent forms
+	 * @return Property removed, or null if the key was not registered
+	 */
+	public Property remove(String key) {
+		if (key == null) {
+			throw new InvalidParameterException("key paramter is null");
+		}
+		int h = canonicalHash(key);
+		int mask = keys.length - 1;
+		int i = h & mask;
+		for (; keys[i] != null; i = (i + 1) & mask) {
+			if (hashes[i] == h && canonicalEquals(keys[i], key)) {
+				break;
+			}
+		}
+		if (keys[i] == null) {
+			return null;
+		}
+		Property removed = values[i];
+		int gap = i;
+		for (int j = (gap + 1) & mask; keys[j] != null; j = (j + 1) & mask) {
+			int home = hashes[j] & mask;
+			// entry at j may fill the gap only if its home slot is not cyclically within (gap, j]
+			if (((j - home) & mask) >= ((j - gap) & mask)) {
+				keys[gap] = keys[j];
+				hashes[gap] = hashes[j];
+				values[gap] = values[j];
+				gap = j;
+			}
+		}
+		keys[gap] = null;
+		values[gap] = null;
+		size--;
+		return removed;
+	}
+
+	/*
+	 * @return number of registered canonical keys
+	 */
+	public int size() {
+		return size;
+	}
+
+	/*
+	 * Removes all registered Properties
+	 */
+	public void clear() {
+		Arrays.fill(keys, null);
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	private void resize(int capacity) {
+		String[] oldKeys = keys;
+		int[] oldHashes = hashes;
+		Property[] oldValues = values;
+		keys = new String[capacity];
+		hashes = new int[capacity];
+		values = new Property[capacity];
+		int mask = capacity - 1;
+		for (int j = 0; j < oldKeys.length; j++) {
+			if (oldKeys[j] != null) {
+				int i = oldHashes[j] & mask;
+				while (keys[i] != null) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = oldKeys[j];
+				hashes[i] = oldHashes[j];
+				values[i] = oldValues[j];
+			}
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package pl.karcisze.properties;
+
+import java.security.InvalidParameterException;
+import java.util.List;
+
+/**
+ * This interface is the callback PropertyFileParser puts parsed Properties through. It is implemented by
+ * AppPropertiesManagerExtensible, which converts and adds Properties into a container, and by
+ * PropertySourceStaging, which only records them.
+ *
+ * @author Krzysztof Arciszewski
+ */
+public interface PropertySink {
+
+    /**
+     * Given instance of TrialAppProperties, puts there a Property of a given key and value.
+     *
+     * @param appProperties container to put a new Property into
+     * @param key value of key that specifies Property to be put into appProperties container
+     * @param value value of the Property to be put into appProperties container
+     */
+    public void addProperty(TrialAppProperties appProperties, String key, Object value);
+
+    /**
+     * Given instance of TrialAppProperties, puts there Properties of a whole parsed property source, in the order of
+     * the lists. The result is the same as of calling addProperty for every key/value pair in that order, which is
+     * what this method does by default; implementations may add a whole source at once.
+     *
+     * @param appProperties container to put new Properties into
+     * @param keys keys of Properties to be put into appProperties container
+     * @param values values of Properties to be put into appProperties container, in the same order as keys
+     */
+    public default void addProperties(TrialAppProperties appProperties, List<String> keys, List<Object> values) {
+        if (keys == null) {
+            throw new InvalidParameterException("keys paramter is null");
+        }
+        if (values == null) {
+            throw new InvalidParameterException("values paramter is null");
+        }
+        if (values.size() != keys.size()) {
+            throw new InvalidParameterException("different lengths of keys and values");
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            addProperty(appProperties, keys.get(i), values.get(i));
+        }
+    }
+}
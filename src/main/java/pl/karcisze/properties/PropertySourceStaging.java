@@ -0,0 +1,105 @@
+package pl.karcisze.properties;
+
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+/*
+ * Staging area for Properties parsed from a single property source.
+ * It is passed to PropertyFileParser instead of the actual AppPropertiesManagerExtensible, and it records key/value
+ * pairs in the order they are parsed, without converting nor merging them. Recorded pairs are then replayed into
+ * actual AppProperties container, so sources can be fetched and parsed concurrently while they are still merged
+ * in their original order.
+ *
+ * This is supporting class for TrialAppPropertiesManager.
+ *
+ * @author Krzysztof Arciszewski
+ */
+public class PropertySourceStaging implements PropertySink {
+
+	public final static Logger LOGGER = Logger.getLogger("AppProperties");
+
+	private final String propUri;
+	private final List<String> keys = new ArrayList<String>();
+	private final List<Object> values = new ArrayList<Object>();
+
+	/*
+	 * @param propUri URI of the property source staged in this instance
+	 */
+	public PropertySourceStaging(String propUri) {
+		this.propUri = propUri;
+	}
+
+	/*
+	 * @return URI of the property source staged in this instance
+	 */
+	public String getPropUri() {
+		return propUri;
+	}
+
+	/*
+	 * @return number of staged key/value pairs
+	 */
+	public int size() {
+		return keys.size();
+	}
+
+	/*
+	 * @return staged keys, in the order they were staged
+	 */
+	public List<String> getKeys() {
+		return Collections.unmodifiableList(keys);
+	}
+
+	/*
+	 * @return staged values, in the order of their keys
+	 */
+	public List<Object> getValues() {
+		return Collections.unmodifiableList(values);
+	}
+
+	/*
+	 * Records key/value pair. appProperties parameter is ignored - Properties are staged in this instance.
+	 */
+	@Override
+	public void addProperty(TrialAppProperties appProperties, String key, Object value) {
+		if(key==null){
+			throw new InvalidParameterException("key paramter is null");
+		}
+		if(value==null){
+			throw new InvalidParameterException("value paramter is null");
+		}
+		keys.add(key);
+		values.add(value);
+	}
+
+	/*
+	 * Records key/value pairs of a whole source. appProperties parameter is ignored - Properties are staged in this instance.
+	 */
+	@Override
+	public void addProperties(TrialAppProperties appProperties, List<String> keys, List<Object> values) {
+		if(keys==null){
+			throw new InvalidParameterException("keys paramter is null");
+		}
+		if(values==null){
+			throw new InvalidParameterException("values paramter is null");
+		}
+		if(values.size()!=keys.size()){
+			throw new InvalidParameterException("different lengths of keys and values");
+		}
+		this.keys.addAll(keys);
+		this.values.addAll(values);
+	}
+
+	/*
+	 * Adds all staged key/value pairs, in the order they were staged, into given container, as a single batch.
+	 *
+	 * @param manager manager used to add Properties
+	 * @param appProperties container to put staged Properties into
+	 */
+	public void replayInto(PropertySink manager, TrialAppProperties appProperties) {
+		manager.addProperties(appProperties, keys, values);
+	}
+}
@@ -0,0 +1,26 @@
+package pl.karcisze.properties;
+
+/*
+ * Converter of String values of Properties into values of a given type. Converters are registered in
+ * PropertyValueConverters, either as built-in ones, or by ServiceLoader - implementations listed in
+ * META-INF/services/pl.karcisze.properties.PropertyValueConverter files on the classpath.
+ *
+ * Converters must be stateless and thread safe, as a single instance is shared by all Properties of its type.
+ *
+ * @author Krzysztof Arciszewski
+ */
+public interface PropertyValueConverter {
+
+	/*
+	 * @return name of the type of values created by this converter, as used in types of Properties,
+	 *         e.g. "java.lang.Long"
+	 */
+	String getType();
+
+	/*
+	 * @param value String value of a Property
+	 * @return value of the Property converted into the type of this converter, or Property.PROPERTY_EMPTYVALUE
+	 *         if the value does not represent a value of the type
+	 */
+	Object convert(String value);
+}
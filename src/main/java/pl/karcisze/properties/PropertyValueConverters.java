@@ -0,0 +1,259 @@
+package pl.karcisze.properties;
+
+import com.amazonaws.regions.Regions;
+
+import java.net.InetAddress;
+import java.net.URISyntaxException;
+import java.net.UnknownHostException;
+import java.security.InvalidParameterException;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Registry of PropertyValueConverter instances by type name. Registry holds built-in converters of
+ * java.lang.String, java.lang.Boolean, java.lang.Integer, java.lang.Long, java.lang.Double,
+ * com.amazonaws.regions.Regions, java.time.Duration, java.net.URI and java.net.InetAddress, followed by converters
+ * found by ServiceLoader. A converter found by ServiceLoader replaces a built-in converter of the same type.
+ *
+ * Registry is built once, when this class is initialized. PropertyCompletionHandler binds every registered key to its
+ * converter when it is constructed.
+ *
+ * @author Krzysztof Arciszewski
+ */
+public class PropertyValueConverters {
+
+	public final static Logger LOGGER = Logger.getLogger("AppProperties");
+
+	public static final PropertyValueConverter STRING = new PropertyValueConverter() {
+		public String getType() {
+			return "java.lang.String";
+		}
+
+		public Object convert(String value) {
+			return value;
+		}
+	};
+
+	public static final PropertyValueConverter BOOLEAN = new PropertyValueConverter() {
+		public String getType() {
+			return "java.lang.Boolean";
+		}
+
+		public Object convert(String value) {
+			if ("true".equals(value)) {
+				return Boolean.TRUE;
+			} else if ("false".equals(value)) {
+				return Boolean.FALSE;
+			}
+			return Property.PROPERTY_EMPTYVALUE;
+		}
+	};
+
+	public static final PropertyValueConverter INTEGER = new PropertyValueConverter() {
+		public String getType() {
+			return "java.lang.Integer";
+		}
+
+		public Object convert(String value) {
+			try {
+				return Integer.valueOf(value);
+			} catch (NumberFormatException e) {
+				return Property.PROPERTY_EMPTYVALUE;
+			}
+		}
+	};
+
+	public static final PropertyValueConverter LONG = new PropertyValueConverter() {
+		public String getType() {
+			return "java.lang.Long";
+		}
+
+		public Object convert(String value) {
+			try {
+				return Long.valueOf(value);
+			} catch (NumberFormatException e) {
+				return Property.PROPERTY_EMPTYVALUE;
+			}
+		}
+	};
+
+	public static final PropertyValueConverter DOUBLE = new PropertyValueConverter() {
+		public String getType() {
+			return "java.lang.Double";
+		}
+
+		public Object convert(String value) {
+			try {
+				return Double.valueOf(value);
+			} catch (NumberFormatException e) {
+				return Property.PROPERTY_EMPTYVALUE;
+			}
+		}
+	};
+
+	public static final PropertyValueConverter REGIONS = new PropertyValueConverter() {
+		public String getType() {
+			return "com.amazonaws.regions.Regions";
+		}
+
+		public Object convert(String value) {
+			try {
+				return Regions.fromName(value);
+			} catch (IllegalArgumentException e) {
+				return Property.PROPERTY_EMPTYVALUE;
+			}
+		}
+	};
+
+	/*
+	 * Converter of ISO-8601 durations, e.g. "PT30S"
+	 */
+	public static final PropertyValueConverter DURATION = new PropertyValueConverter() {
+		public String getType() {
+			return "java.time.Duration";
+		}
+
+		public Object convert(String value) {
+			try {
+				return Duration.parse(value);
+			} catch (DateTimeParseException e) {
+				return Property.PROPERTY_EMPTYVALUE;
+			}
+		}
+	};
+
+	public static final PropertyValueConverter URI = new PropertyValueConverter() {
+		public String getType() {
+			return "java.net.URI";
+		}
+
+		public Object convert(String value) {
+			try {
+				return new java.net.URI(value);
+			} catch (URISyntaxException e) {
+				return Property.PROPERTY_EMPTYVALUE;
+			}
+		}
+	};
+
+	/*
+	 * Converter of literal IP addresses. Values are parsed, never resolved: conversion runs while Properties are
+	 * added, so it must not block on a DNS lookup. Host names are not converted - Properties holding host names
+	 * should be declared as java.lang.String and resolved where they are used.
+	 */
+	public static final PropertyValueConverter INET_ADDRESS = new PropertyValueConverter() {
+		public String getType() {
+			return "java.net.InetAddress";
+		}
+
+		public Object convert(String value) {
+			try {
+				byte[] ipv4 = parseIPv4(value);
+				if (ipv4 != null) {
+					return InetAddress.getByAddress(ipv4);
+				}
+				if (isIPv6Literal(value)) {
+					// InetAddress parses IPv6 literals without lookup
+					return InetAddress.getByName(value);
+				}
+			} catch (UnknownHostException e) {
+				LOGGER.log(Level.FINE, "invalid IP address:[" + value + "]", e);
+			}
+			return Property.PROPERTY_EMPTYVALUE;
+		}
+	};
+
+	/*
+	 * @return 4 bytes of dotted decimal IPv4 address, or null if the value is not such address
+	 */
+	private static byte[] parseIPv4(String value) {
+		byte[] address = new byte[4];
+		int part = 0;
+		int octet = -1;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c >= '0' && c <= '9') {
+				octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+				if (octet > 255) {
+					return null;
+				}
+			} else if (c == '.' && octet >= 0 && part < 3) {
+				address[part++] = (byte) octet;
+				octet = -1;
+			} else {
+				return null;
+			}
+		}
+		if (part != 3 || octet < 0) {
+			return null;
+		}
+		address[3] = (byte) octet;
+		return address;
+	}
+
+	/*
+	 * @return true if the value has form of IPv6 literal, optionally in brackets - hex digits, ':' and '.' of
+	 *         embedded IPv4 address only, so it is never taken for a host name
+	 */
+	private static boolean isIPv6Literal(String value) {
+		String literal = value.startsWith("[") && value.endsWith("]") ? value.substring(1, value.length() - 1) : value;
+		if (literal.indexOf(':') < 0) {
+			return false;
+		}
+		for (int i = 0; i < literal.length(); i++) {
+			char c = literal.charAt(i);
+			if (Character.digit(c, 16) < 0 && c != ':' && c != '.') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static final Map<String, PropertyValueConverter> converters = load();
+
+	private static Map<String, PropertyValueConverter> load() {
+		Map<String, PropertyValueConverter> m = new HashMap<String, PropertyValueConverter>();
+		for (PropertyValueConverter c : new PropertyValueConverter[] { STRING, BOOLEAN, INTEGER, LONG, DOUBLE, REGIONS,
+				DURATION, URI, INET_ADDRESS }) {
+			m.put(c.getType(), c);
+		}
+		try {
+			for (PropertyValueConverter c : ServiceLoader.load(PropertyValueConverter.class)) {
+				if (m.put(c.getType(), c) != null) {
+					LOGGER.log(Level.INFO, "Converter of type:[{0}] replaced by:[{1}]", new Object[] { c.getType(), c.getClass().getName() });
+				} else {
+					LOGGER.log(Level.INFO, "Converter of type:[{0}] registered:[{1}]", new Object[] { c.getType(), c.getClass().getName() });
+				}
+			}
+		} catch (ServiceConfigurationError e) {
+			LOGGER.log(Level.WARNING, "error loading property value converters", e);
+		}
+		return Collections.unmodifiableMap(m);
+	}
+
+	/*
+	 * @param type name of the type of values
+	 * @return converter of a given type, or null if no converter of the type is registered
+	 */
+	public static PropertyValueConverter get(String type) {
+		if(type==null){
+			throw new InvalidParameterException("type paramter is null");
+		}
+		return converters.get(type);
+	}
+
+	/*
+	 * @return names of types of all registered converters
+	 */
+	public static Set<String> getTypes() {
+		return converters.keySet();
+	}
+}
@@ -0,0 +1,486 @@
+package pl.karcisze.properties;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * AppProperties that follow changes of their file:// sources.
+ *
+ * Directories of file:// sources are watched with WatchService. Once changes of watched files stop for the debounce
+ * period, sources are loaded again in background, and new read-only snapshot is published with a single volatile
+ * reference swap. With TrialAppPropertiesManager sources are layers of LayeredAppProperties, so only layers of changed
+ * files are loaded again, and only keys they define are resolved again - Properties interpolated from other keys are
+ * recomputed only if they depend on a changed key. With other managers all sources are loaded and merged again. Readers never block and never see half-merged Properties - each call reads one snapshot.
+ * If reload fails, previous snapshot stays published and watching goes on - also if it fails with InternalError, which
+ * is raised when a mapped file is truncated while it is read.
+ *
+ * Listeners may subscribe to changes of a key, of keys with a given prefix, or of an abstraction class. Changes are
+ * computed by diffing the snapshot last delivered with the newest one, and are delivered in batches on a dedicated
+ * thread, so reloads never wait for listeners. Snapshots published while a delivery is pending are coalesced into
+ * the next batch, so listeners never see intermediate states.
+ *
+ * @author Krzysztof Arciszewski
+ */
+public class ReloadingAppProperties implements TypedAppProperties, Closeable {
+
+	public final static Logger LOGGER = Logger.getLogger("AppProperties");
+
+	public static final long DEBOUNCE_MILLIS_DEFAULT = 200;
+
+	private static final String URI_FILE = "file://";
+
+	private final AppPropertiesManager manager;
+	private final List<String> propUris;
+	private final long debounceMillis;
+	private final WatchService watchService;
+	// watched files, as absolute normalized paths
+	private final Set<Path> watchedFiles = new HashSet<Path>();
+	private final Thread watcher;
+	// layers of sources, or null if the manager does not load layers and all sources are loaded on every reload
+	private final LayeredAppProperties layered;
+
+	private volatile CompiledAppProperties snapshot;
+	private final Object reloadLock = new Object();
+
+	private final List<Subscription> subscriptions = new CopyOnWriteArrayList<Subscription>();
+	private final ExecutorService deliveryExecutor;
+	private final AtomicBoolean deliveryScheduled = new AtomicBoolean(false);
+	// snapshot listeners have been notified of, accessed by delivery thread only
+	private CompiledAppProperties delivered;
+
+	/*
+	 * @param manager manager used to load Properties
+	 * @param propUris an ordered list of properties files to load, keys in later URIs override old keys
+	 */
+	public ReloadingAppProperties(AppPropertiesManager manager, List<String> propUris) {
+		this(manager, propUris, DEBOUNCE_MILLIS_DEFAULT);
+	}
+
+	/*
+	 * Loads Properties and starts watching file:// sources.
+	 *
+	 * @param manager manager used to load Properties
+	 * @param propUris an ordered list of properties files to load, keys in later URIs override old keys
+	 * @param debounceMillis time without further changes to wait before reload
+	 */
+	public ReloadingAppProperties(AppPropertiesManager manager, List<String> propUris, long debounceMillis) {
+		if(manager==null){
+			throw new InvalidParameterException("manager paramter is null");
+		}
+		if(propUris==null){
+			throw new InvalidParameterException("propUris paramter is null");
+		}
+		this.manager = manager;
+		this.propUris = new ArrayList<String>(propUris);
+		this.debounceMillis = debounceMillis;
+		if (manager instanceof TrialAppPropertiesManager) {
+			this.layered = new LayeredAppProperties((TrialAppPropertiesManager) manager, this.propUris);
+			this.snapshot = layered.freeze();
+		} else {
+			this.layered = null;
+			this.snapshot = load();
+		}
+		this.delivered = snapshot;
+		this.deliveryExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "AppProperties-listeners");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+
+		try {
+			watchService = newWatchService();
+		} catch (RuntimeException e) {
+			deliveryExecutor.shutdown();
+			throw e;
+		}
+		watcher = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				watch();
+			}
+		}, "AppProperties-reload");
+		watcher.setDaemon(true);
+		watcher.start();
+	}
+
+	/*
+	 * Registers directories of file:// sources with a new WatchService. The WatchService is closed if any of
+	 * registrations fails, so a failed constructor does not leak it.
+	 */
+	private WatchService newWatchService() {
+		WatchService ws = null;
+		try {
+			ws = FileSystems.getDefault().newWatchService();
+			Set<Path> directories = new HashSet<Path>();
+			for (String propUri : propUris) {
+				Path file = fileOf(propUri);
+				if (file != null) {
+					watchedFiles.add(file);
+					directories.add(file.getParent());
+				}
+			}
+			for (Path directory : directories) {
+				directory.register(ws, StandardWatchEventKinds.ENTRY_CREATE,
+						StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+			}
+			WatchService registered = ws;
+			ws = null;
+			return registered;
+		} catch (IOException e) {
+			throw new AppPropertiesException("error watching property sources",e);
+		} finally {
+			if (ws != null) {
+				try {
+					ws.close();
+				} catch (IOException e) {
+					LOGGER.log(Level.ALL, "error closing watch service" + e);
+				}
+			}
+		}
+	}
+
+	/*
+	 * @return currently published read-only snapshot of Properties
+	 */
+	public CompiledAppProperties getSnapshot() {
+		return snapshot;
+	}
+
+	/*
+	 * Loads all sources again, and publishes new snapshot. Reloads are serialized, so a reload
+	 * triggered by the watcher and a manual one can not overlap, and an older load never publishes last.
+	 */
+	public void reload() {
+		reload(null);
+	}
+
+	/*
+	 * @param changedFiles files changed since last reload, or null to load all sources again
+	 */
+	private void reload(Set<Path> changedFiles) {
+		synchronized (reloadLock) {
+			if (layered == null) {
+				snapshot = load();
+			} else {
+				for (int i = 0; i < propUris.size(); i++) {
+					if (changedFiles == null || changedFiles.contains(fileOf(propUris.get(i)))) {
+						layered.reloadLayer(i);
+					}
+				}
+				snapshot = layered.freeze();
+			}
+		}
+		LOGGER.log(Level.INFO, "Properties reloaded from URIs:"+propUris);
+		scheduleDelivery();
+	}
+
+	/*
+	 * @return absolute normalized path of file:// URI, or null if the URI does not locate a file
+	 */
+	private static Path fileOf(String propUri) {
+		if (!propUri.startsWith(URI_FILE)) {
+			return null;
+		}
+		return Paths.get(propUri.substring(URI_FILE.length())).toAbsolutePath().normalize();
+	}
+
+	/*
+	 * Subscribes listener to changes of Property of a given key, in any of its equivalent forms
+	 */
+	public void addKeyListener(String key, PropertyChangeListener listener) {
+		if(key==null){
+			throw new InvalidParameterException("key paramter is null");
+		}
+		subscribe(new Subscription(Subscription.KEY, key, null, listener));
+	}
+
+	/*
+	 * Subscribes listener to changes of Properties which keys start with a given prefix. '.' and '_' in keys
+	 * are equivalent, and case is ignored.
+	 */
+	public void addPrefixListener(String prefix, PropertyChangeListener listener) {
+		if(prefix==null){
+			throw new InvalidParameterException("prefix paramter is null");
+		}
+		subscribe(new Subscription(Subscription.PREFIX, prefix, null, listener));
+	}
+
+	/*
+	 * Subscribes listener to changes of Properties of abstraction class of a given key. Key that is not declared
+	 * in PropertyCompletionHandler forms abstraction class of its own.
+	 */
+	public void addClosureListener(String key, PropertyChangeListener listener) {
+		if(key==null){
+			throw new InvalidParameterException("key paramter is null");
+		}
+		TreeSet<String> closure = PropertyCompletionHandler.getPropertyManager().getPropertyClosure(key);
+		if (closure == null) {
+			subscribe(new Subscription(Subscription.KEY, key, null, listener));
+		} else {
+			subscribe(new Subscription(Subscription.CLOSURE, key, closure, listener));
+		}
+	}
+
+	/*
+	 * Removes all subscriptions of a given listener
+	 */
+	public void removeListener(PropertyChangeListener listener) {
+		for (Subscription subscription : subscriptions) {
+			if (subscription.listener == listener) {
+				subscriptions.remove(subscription);
+			}
+		}
+	}
+
+	/*
+	 * Stops watching sources and delivering changes. Changes already scheduled are still delivered.
+	 * Last published snapshot stays available.
+	 */
+	@Override
+	public void close() throws IOException {
+		watchService.close();
+		watcher.interrupt();
+		deliveryExecutor.shutdown();
+	}
+
+	private void subscribe(Subscription subscription) {
+		if(subscription.listener==null){
+			throw new InvalidParameterException("listener paramter is null");
+		}
+		subscriptions.add(subscription);
+	}
+
+	/*
+	 * Schedules delivery of changes, unless one is scheduled already and has not started yet - then the newest
+	 * snapshot is picked by that delivery.
+	 */
+	private void scheduleDelivery() {
+		if (deliveryScheduled.compareAndSet(false, true)) {
+			try {
+				deliveryExecutor.execute(new Runnable() {
+					@Override
+					public void run() {
+						deliver();
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				LOGGER.log(Level.INFO, "changes not delivered - listeners stopped");
+			}
+		}
+	}
+
+	private void deliver() {
+		deliveryScheduled.set(false);
+		CompiledAppProperties newest = snapshot;
+		if (subscriptions.isEmpty() || newest == delivered) {
+			delivered = newest;
+			return;
+		}
+		List<PropertyChange> changes = PropertyChange.diff(delivered, newest);
+		delivered = newest;
+		if (changes.isEmpty()) {
+			return;
+		}
+		for (Subscription subscription : subscriptions) {
+			List<PropertyChange> selected = new ArrayList<PropertyChange>();
+			for (PropertyChange change : changes) {
+				if (subscription.matches(change.getKey())) {
+					selected.add(change);
+				}
+			}
+			if (selected.isEmpty()) {
+				continue;
+			}
+			try {
+				subscription.listener.propertiesChanged(selected);
+			} catch (Throwable e) {
+				rethrowFatal(e);
+				LOGGER.log(Level.WARNING, "property change listener failed", e);
+			}
+		}
+	}
+
+	/*
+	 * Listener with its selection of keys
+	 */
+	private static class Subscription {
+
+		static final int KEY = 0;
+		static final int PREFIX = 1;
+		static final int CLOSURE = 2;
+
+		final int kind;
+		final String selector;
+		final TreeSet<String> closure;
+		final PropertyChangeListener listener;
+
+		Subscription(int kind, String selector, TreeSet<String> closure, PropertyChangeListener listener) {
+			this.kind = kind;
+			this.selector = selector;
+			this.closure = closure;
+			this.listener = listener;
+		}
+
+		boolean matches(String key) {
+			switch (kind) {
+			case KEY:
+				return PropertyKeyIndex.canonicalEquals(key, selector);
+			case PREFIX:
+				return PropertyKeyIndex.canonicalStartsWith(key, selector);
+			default:
+				return closure.contains(key);
+			}
+		}
+	}
+
+	/*
+	 * Rethrows errors the JVM can not go on after. InternalError is not rethrown: it is raised by reading a mapped file
+	 * truncated while it is read, and a later reload of the rewritten file recovers from it.
+	 */
+	private static void rethrowFatal(Throwable e) {
+		if (e instanceof VirtualMachineError && !(e instanceof InternalError)) {
+			throw (VirtualMachineError) e;
+		}
+	}
+
+	private CompiledAppProperties load() {
+		AppProperties props = manager.loadProps(propUris);
+		if (props instanceof CompiledAppProperties) {
+			return (CompiledAppProperties) props;
+		}
+		if (props instanceof TrialAppProperties) {
+			return ((TrialAppProperties) props).freeze();
+		}
+		throw new AppPropertiesException("props loaded are not of TrialAppProperties type - which is invalid");
+	}
+
+	/*
+	 * Watching loop. Waits for change of a watched file, then drains further events until none arrives for
+	 * debounce period, and reloads sources of changed files.
+	 */
+	private void watch() {
+		try {
+			while (true) {
+				Set<Path> changed = new HashSet<Path>();
+				drain(watchService.take(), changed);
+				WatchKey key;
+				while ((key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null) {
+					drain(key, changed);
+				}
+				if (!changed.isEmpty()) {
+					try {
+						reload(changed);
+					} catch (Throwable e) {
+						rethrowFatal(e);
+						LOGGER.log(Level.WARNING, "error reloading Properties - keeping previous snapshot", e);
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			LOGGER.log(Level.INFO, "watching property sources interrupted");
+		} catch (ClosedWatchServiceException e) {
+			LOGGER.log(Level.INFO, "watching property sources stopped");
+		}
+	}
+
+	/*
+	 * Adds watched files that events of the key concern to a given set
+	 */
+	private void drain(WatchKey key, Set<Path> changed) {
+		Path directory = (Path) key.watchable();
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				// events lost, so any file may have changed
+				changed.addAll(watchedFiles);
+			} else {
+				Path file = directory.resolve((Path) event.context());
+				if (watchedFiles.contains(file)) {
+					changed.add(file);
+				}
+			}
+		}
+		key.reset();
+	}
+
+	@Override
+	public List<String> getMissingProperties() {
+		return snapshot.getMissingProperties();
+	}
+
+	@Override
+	public List<String> getKnownProperties() {
+		return snapshot.getKnownProperties();
+	}
+
+	@Override
+	public boolean isValid() {
+		return snapshot.isValid();
+	}
+
+	/*
+	 * Published snapshots are read-only, so they can not be cleared
+	 */
+	@Override
+	public void clear() {
+		snapshot.clear();
+	}
+
+	@Override
+	public Object get(String key) {
+		return snapshot.get(key);
+	}
+
+	@Override
+	public long getLong(String key, long defaultValue) {
+		return snapshot.getLong(key, defaultValue);
+	}
+
+	@Override
+	public int getInt(String key, int defaultValue) {
+		return snapshot.getInt(key, defaultValue);
+	}
+
+	@Override
+	public double getDouble(String key, double defaultValue) {
+		return snapshot.getDouble(key, defaultValue);
+	}
+
+	@Override
+	public boolean getBoolean(String key, boolean defaultValue) {
+		return snapshot.getBoolean(key, defaultValue);
+	}
+
+	/*
+	 * @return String representation of currently published snapshot
+	 */
+	@Override
+	public String toString() {
+		return snapshot.toString();
+	}
+}
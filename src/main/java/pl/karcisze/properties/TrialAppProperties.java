@@ -1,10 +1,21 @@
 package pl.karcisze.properties;
 
 import java.security.InvalidParameterException;
+import java.util.AbstractCollection;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.SortedSet;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -18,24 +29,332 @@ public class TrialAppProperties implements AppProperties {
 
 	public final static Logger LOGGER = Logger.getLogger("AppProperties");
 
+	// sorted view of Properties, used for listing and printing only
 	protected TreeMap<String, Property> properties = new TreeMap<String, Property>(new PropertyKeyComparator());
+	// index of Properties by canonical key, used for lookups
+	protected PropertyKeyIndex index = new PropertyKeyIndex();
+	// keys of Properties with empty value, in the form they are registered in the sorted view
+	private final TreeSet<String> missing = new TreeSet<String>(new PropertyKeyComparator());
+	// keys of lazily converted Properties, which are missing or not depending on result of their conversion.
+	// They are not in missing nor in missingIds until a writer settles them, or the first read folds them in.
+	private final Set<String> pending = new LinkedHashSet<String>();
+	// true if pending is not empty, read by readers without the lock
+	private volatile boolean hasPending = false;
+	// immutable copy of missing keys, published by writers whenever missing keys change
+	private volatile List<String> missingView = Collections.emptyList();
+
+	private final PropertyCompletionHandler propertyCompletionHandler = PropertyCompletionHandler.getPropertyManager();
+	// ids of registered declared keys, and ids of those of them that are missing
+	private final BitSet registeredIds = new BitSet();
+	private final BitSet missingIds = new BitSet();
+	// keys of interpolated Properties by keys they reference - edges of dependency graph, in canonical key order
+	private final TreeMap<String, TreeSet<String>> dependents = new TreeMap<String, TreeSet<String>>(new PropertyKeyComparator());
 
 	/*
-     * @return a list of properties that are unset either because they are missing or because they have the wrong type
+	 * @param key of Property, in any of its equivalent forms
+	 * @return true if Property of the given key has been registered
 	 */
-	@Override
-	public List<String> getMissingProperties() {
+	protected boolean containsProperty(String key) {
+		return index.containsKey(key);
+	}
+
+	/*
+	 * Registers Property of a given key, or replaces the one already registered for the key.
+	 * Both, sorted view and canonical key index, are updated. Property and key are replaced by their canonical
+	 * instances from PropertyInternPool, so containers holding equal Properties share them.
+	 * InterpolatedProperty is bound to this instance, and values of Properties interpolated from the key are invalidated.
+	 *
+	 * @param key of Property, in any of its equivalent forms
+	 * @param property Property to be registered
+	 */
+	protected synchronized void putProperty(String key, Property property) {
+		property = PropertyInternPool.internProperty(property);
+		if (property instanceof InterpolatedProperty) {
+			property = ((InterpolatedProperty) property).bindTo(this);
+		}
+		String registeredKey = properties.containsKey(key) ? properties.ceilingKey(key) : PropertyInternPool.internKey(key);
+		Property replaced = properties.put(registeredKey, property);
+		index.put(registeredKey, property);
+		if (replaced instanceof InterpolatedProperty) {
+			removeDependencies(registeredKey, (InterpolatedProperty) replaced);
+		}
+		if (property instanceof InterpolatedProperty) {
+			addDependencies(registeredKey, (InterpolatedProperty) property);
+		}
+		invalidateDependents(registeredKey);
+		int id = propertyCompletionHandler.getPropertyId(registeredKey);
+		if (id >= 0) {
+			registeredIds.set(id);
+		}
+		if (property instanceof LazyProperty && !((LazyProperty) property).isConverted()) {
+			markPending(registeredKey);
+		} else {
+			removePending(registeredKey);
+			updateMissing(registeredKey, property);
+		}
+	}
+
+	/*
+	 * Removes Property of a given key, if it is registered. Both, sorted view and canonical key index, are updated.
+	 * Abstraction class of the Property is not affected.
+	 *
+	 * @param key of Property, in any of its equivalent forms
+	 * @return true if Property has been removed
+	 */
+	protected synchronized boolean removeProperty(String key) {
+		if (!properties.containsKey(key)) {
+			return false;
+		}
+		String registeredKey = properties.ceilingKey(key);
+		Property removed = properties.remove(registeredKey);
+		index.remove(registeredKey);
+		removePending(registeredKey);
+		if (removed instanceof InterpolatedProperty) {
+			removeDependencies(registeredKey, (InterpolatedProperty) removed);
+		}
+		invalidateDependents(registeredKey);
+		if (missing.remove(registeredKey)) {
+			publishMissing();
+		}
+		int id = propertyCompletionHandler.getPropertyId(registeredKey);
+		if (id >= 0) {
+			registeredIds.clear(id);
+			missingIds.clear(id);
+		}
+		return true;
+	}
+
+	private void addDependencies(String registeredKey, InterpolatedProperty property) {
+		for (String reference : property.getReferences()) {
+			TreeSet<String> keys = dependents.get(reference);
+			if (keys == null) {
+				keys = new TreeSet<String>(new PropertyKeyComparator());
+				dependents.put(reference, keys);
+			}
+			keys.add(registeredKey);
+		}
+	}
+
+	private void removeDependencies(String registeredKey, InterpolatedProperty property) {
+		for (String reference : property.getReferences()) {
+			TreeSet<String> keys = dependents.get(reference);
+			if (keys != null && keys.remove(registeredKey) && keys.isEmpty()) {
+				dependents.remove(reference);
+			}
+		}
+	}
+
+	/*
+	 * Invalidates values of interpolated Properties depending on a given key, directly or transitively. Only those
+	 * Properties are resolved again, on their next access; values of all other Properties stay memoized.
+	 */
+	private void invalidateDependents(String registeredKey) {
+		if (dependents.isEmpty()) {
+			return;
+		}
+		for (String dependent : getDependentKeys(registeredKey)) {
+			Property p = properties.get(dependent);
+			if (p instanceof InterpolatedProperty) {
+				((InterpolatedProperty) p).invalidate();
+				markPending(dependent);
+			}
+		}
+	}
+
+	/*
+	 * @param key of Property, in any of its equivalent forms
+	 * @return keys of interpolated Properties which values depend on a given key, directly or transitively, in sorted order
+	 */
+	public SortedSet<String> getDependentKeys(String key) {
+		if(key == null) {
+			throw new InvalidParameterException("key paramter is null");
+		}
+		TreeSet<String> visited = new TreeSet<String>(new PropertyKeyComparator());
+		List<String> queue = new ArrayList<String>();
+		queue.add(key);
+		for (int i = 0; i < queue.size(); i++) {
+			TreeSet<String> keys = dependents.get(queue.get(i));
+			if (keys != null) {
+				for (String dependent : keys) {
+					if (visited.add(dependent)) {
+						queue.add(dependent);
+					}
+				}
+			}
+		}
+		return Collections.unmodifiableSortedSet(visited);
+	}
+
+	private void updateMissing(String registeredKey, Property property) {
+		boolean changed;
+		boolean empty = Property.PROPERTY_EMPTYVALUE.equals(property.getValue());
+		if (empty) {
+			changed = missing.add(registeredKey);
+		} else {
+			changed = missing.remove(registeredKey);
+		}
+		int id = propertyCompletionHandler.getPropertyId(registeredKey);
+		if (id >= 0) {
+			missingIds.set(id, empty);
+		}
+		if (changed) {
+			publishMissing();
+		}
+	}
+
+	/*
+	 * Moves a registered key into pending, so it is missing or not depending on its next conversion
+	 */
+	private void markPending(String registeredKey) {
+		pending.add(registeredKey);
+		hasPending = true;
+		int id = propertyCompletionHandler.getPropertyId(registeredKey);
+		if (id >= 0) {
+			missingIds.clear(id);
+		}
+		if (missing.remove(registeredKey)) {
+			publishMissing();
+		}
+	}
+
+	private void removePending(String registeredKey) {
+		if (pending.remove(registeredKey) && pending.isEmpty()) {
+			hasPending = false;
+		}
+	}
+
+	private void publishMissing() {
+		missingView = Collections.unmodifiableList(new ArrayList<String>(missing));
+	}
+
+	/*
+	 * Moves lazily converted Properties that have been converted since they were registered out of pending, into
+	 * tracking of missing keys, so reads do not have to check them again. Properties not converted yet stay pending,
+	 * so nothing is converted here. It is called by writers, which hold the lock of this instance.
+	 */
+	protected synchronized void settlePending() {
+		for (Iterator<String> it = pending.iterator(); it.hasNext();) {
+			String key = it.next();
+			Property p = properties.get(key);
+			if (p instanceof LazyProperty && ((LazyProperty) p).isConverted()) {
+				updateMissing(key, p);
+				it.remove();
+			}
+		}
+		hasPending = !pending.isEmpty();
+	}
+
+	/*
+	 * Folds all pending Properties into tracking of missing keys, converting those not converted yet. It is called
+	 * by the first read after pending Properties have been registered, so later reads are field reads again and
+	 * nothing is converted twice.
+	 */
+	private void foldPending() {
+		if (!hasPending) {
+			return;
+		}
+		synchronized (this) {
+			for (String key : pending) {
+				Property p = properties.get(key);
+				if (p != null) {
+					updateMissing(key, p);
+				}
+			}
+			pending.clear();
+			hasPending = false;
+		}
+	}
+
+	/*
+	 * Registers unset Properties for all keys in abstraction class of a given key, which are not registered yet.
+	 * Keys to be registered are found by a single bitwise operation on ids of keys.
+	 *
+	 * @param key of Property which abstraction class is to be registered
+	 * @return number of Properties registered
+	 */
+	protected int putClosure(String key) {
+		int id = propertyCompletionHandler.getPropertyId(key);
+		if (id < 0) {
+			return 0;
+		}
+		BitSet unregistered = (BitSet) propertyCompletionHandler.getPropertyClosureMask(id).clone();
+		unregistered.andNot(registeredIds);
+		int count = 0;
+		for (int i = unregistered.nextSetBit(0); i >= 0; i = unregistered.nextSetBit(i + 1)) {
+			String kc = propertyCompletionHandler.getPropertyKey(i);
+			if (!containsProperty(kc)) {
+				LOGGER.log(Level.INFO, "Closure Property with key:[{0}] being registered", kc);
+				putProperty(kc, Property.getEmptyProperty(kc));
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/*
+	 * @param key of declared Property
+	 * @return true if all Properties in abstraction class of a given key are registered and set
+	 */
+	public boolean isClosureComplete(String key) {
+		if(key == null) {
+			throw new InvalidParameterException("key paramter is null");
+		}
+		int id = propertyCompletionHandler.getPropertyId(key);
+		if (id < 0) {
+			return containsProperty(key) && !Property.PROPERTY_EMPTYVALUE.equals(((Property) get(key)).getValue());
+		}
+		foldPending();
+		BitSet closure = propertyCompletionHandler.getPropertyClosureMask(id);
+		return !closure.intersects(missingIds) && closureRegistered(closure);
+	}
+
+	/*
+	 * @param key of declared Property
+	 * @return sorted list of keys in abstraction class of a given key, which are not registered or not set
+	 */
+	public List<String> getMissingClosureMembers(String key) {
+		if(key == null) {
+			throw new InvalidParameterException("key paramter is null");
+		}
 		List<String> keyList = new ArrayList<String>();
-		Set<String> keys = properties.keySet();
-		for(String key: keys){
-			Property val = (Property)properties.get(key);
-			if(val.equals(Property.getEmptyProperty((key)))){
+		int id = propertyCompletionHandler.getPropertyId(key);
+		if (id < 0) {
+			if (!isClosureComplete(key)) {
 				keyList.add(key);
 			}
+			return keyList;
+		}
+		foldPending();
+		BitSet absent = (BitSet) propertyCompletionHandler.getPropertyClosureMask(id).clone();
+		BitSet set = (BitSet) registeredIds.clone();
+		set.andNot(missingIds);
+		absent.andNot(set);
+		TreeSet<String> sorted = new TreeSet<String>(new PropertyKeyComparator());
+		for (int i = absent.nextSetBit(0); i >= 0; i = absent.nextSetBit(i + 1)) {
+			sorted.add(propertyCompletionHandler.getPropertyKey(i));
 		}
+		keyList.addAll(sorted);
 		return keyList;
 	}
 
+	private boolean closureRegistered(BitSet closure) {
+		BitSet unregistered = (BitSet) closure.clone();
+		unregistered.andNot(registeredIds);
+		return unregistered.isEmpty();
+	}
+
+	/*
+     * @return a list of properties that are unset either because they are missing or because they have the wrong type.
+     *         Missing keys are tracked as Properties are registered, so the list is an immutable view published by
+     *         writers. Lazily converted Properties registered since the last read are folded in by the first read,
+     *         so later reads only read the published view.
+	 */
+	@Override
+	public List<String> getMissingProperties() {
+		foldPending();
+		return missingView;
+	}
+
 	/*
      * @return a list of all known keys
 	 */
@@ -52,28 +371,161 @@ public class TrialAppProperties implements AppProperties {
 	 */
 	@Override
 	public boolean isValid() {
-		List<String> keysMissing = getMissingProperties();
-		if(keysMissing.isEmpty()){
-			return true;
-		}else{
-			return false;
+		foldPending();
+		return missingView.isEmpty();
+	}
+
+	/*
+	 * Keys starting with a given prefix, e.g. "hibernate." or "aws_". Prefix is compared in canonical form, so case
+	 * is ignored and '.' and '_' are equivalent: "aws_" matches "aws.region" and "AWS_REGION" alike.
+	 * Sorted view of Properties is searched for the first match, and matches are then iterated in order until
+	 * the first key not matching, so iteration takes O(log n + matches) and copies nothing.
+	 *
+	 * @param prefix of keys
+	 * @return unmodifiable, lazily iterated view of matching keys, in sorted order. The view reflects later
+	 *         changes of this instance, and like views of TreeMap it must not be iterated while they are made.
+	 */
+	public Collection<String> getKeysWithPrefix(final String prefix) {
+		if(prefix == null) {
+			throw new InvalidParameterException("prefix paramter is null");
 		}
+		return new AbstractCollection<String>() {
+			@Override
+			public Iterator<String> iterator() {
+				final Iterator<Map.Entry<String, Property>> entries = prefixIterator(prefix);
+				return new Iterator<String>() {
+					public boolean hasNext() {
+						return entries.hasNext();
+					}
+
+					public String next() {
+						return entries.next().getKey();
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return count(prefixIterator(prefix));
+			}
+		};
+	}
+
+	/*
+	 * Properties which keys start with a given prefix, as selected by getKeysWithPrefix.
+	 *
+	 * @param prefix of keys
+	 * @return unmodifiable, lazily iterated view of matching Properties, in sorted key order
+	 */
+	public Collection<Property> getPropertiesWithPrefix(final String prefix) {
+		if(prefix == null) {
+			throw new InvalidParameterException("prefix paramter is null");
+		}
+		return new AbstractCollection<Property>() {
+			@Override
+			public Iterator<Property> iterator() {
+				final Iterator<Map.Entry<String, Property>> entries = prefixIterator(prefix);
+				return new Iterator<Property>() {
+					public boolean hasNext() {
+						return entries.hasNext();
+					}
+
+					public Property next() {
+						return entries.next().getValue();
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return count(prefixIterator(prefix));
+			}
+		};
+	}
+
+	/*
+	 * Keys in a given range, compared in canonical form as by PropertyKeyComparator.
+	 *
+	 * @param fromKey lowest key of the range, inclusive
+	 * @param toKey highest key of the range, exclusive
+	 * @return unmodifiable view of keys in the range, in sorted order. The view reflects later changes of this instance.
+	 */
+	public SortedSet<String> getKeysInRange(String fromKey, String toKey) {
+		if(fromKey == null) {
+			throw new InvalidParameterException("fromKey paramter is null");
+		}
+		if(toKey == null) {
+			throw new InvalidParameterException("toKey paramter is null");
+		}
+		return Collections.unmodifiableSortedSet(properties.navigableKeySet().subSet(fromKey, true, toKey, false));
+	}
+
+	/*
+	 * @return iterator over entries of sorted view, from the first key not lower than the prefix, which stops
+	 *         at the first key not starting with the prefix
+	 */
+	private Iterator<Map.Entry<String, Property>> prefixIterator(final String prefix) {
+		final Iterator<Map.Entry<String, Property>> tail = properties.tailMap(prefix, true).entrySet().iterator();
+		return new Iterator<Map.Entry<String, Property>>() {
+			private Map.Entry<String, Property> next = advance();
+
+			private Map.Entry<String, Property> advance() {
+				if (tail.hasNext()) {
+					Map.Entry<String, Property> e = tail.next();
+					if (PropertyKeyIndex.canonicalStartsWith(e.getKey(), prefix)) {
+						return e;
+					}
+				}
+				return null;
+			}
+
+			public boolean hasNext() {
+				return next != null;
+			}
+
+			public Map.Entry<String, Property> next() {
+				if (next == null) {
+					throw new NoSuchElementException();
+				}
+				Map.Entry<String, Property> e = next;
+				next = advance();
+				return e;
+			}
+		};
+	}
+
+	private static int count(Iterator<?> i) {
+		int n = 0;
+		while (i.hasNext()) {
+			i.next();
+			n++;
+		}
+		return n;
 	}
 
 	/*
 	 * Method used to reset all loaded properties to null / unloaded
 	 */
 	@Override
-	public void clear() {
-		Set<String> keys = properties.keySet();
-		for(String key: keys){
-			Property emptyProperty = Property.getEmptyProperty(key);
-			properties.replace(key, emptyProperty);
+	public synchronized void clear() {
+		for(Map.Entry<String, Property> e: properties.entrySet()){
+			Property emptyProperty = PropertyInternPool.internProperty(Property.getEmptyProperty(e.getKey()));
+			e.setValue(emptyProperty);
+			index.put(e.getKey(), emptyProperty);
+			missing.add(e.getKey());
 		}
+		missingIds.clear();
+		missingIds.or(registeredIds);
+		pending.clear();
+		hasPending = false;
+		dependents.clear();
+		publishMissing();
 	}
 
 	/*
-	 * Method to access Properties by their key.
+	 * Method to access Properties by their key. Lookup goes through canonical key index, so it does not allocate.
+	 * Whole Property is returned rather than its value, so callers see the registered key and type along with
+	 * the value (Property.toString gives "key, type, value"); the value itself is Property.getValue().
 	 *
 	 * @param key of Property to be returned.
 	 * @return Property of a given key, or null if such Property has not been registered.
@@ -83,8 +535,26 @@ public class TrialAppProperties implements AppProperties {
 		if(key == null) {
 			throw new InvalidParameterException("key paramter is null");
 		}
-		Object value = properties.get(key); // TODO get should return value not entry
-		return value;
+		return index.get(key);
+	}
+
+	/*
+	 * Compiles current Properties into read-only snapshot. Snapshot is independent of this instance, so later changes
+	 * of this instance are not visible in it. Interpolated Properties are resolved into plain Properties.
+	 *
+	 * @return read-only, thread safe snapshot of Properties
+	 */
+	public CompiledAppProperties freeze() {
+		if (dependents.isEmpty()) {
+			return new CompiledAppProperties(properties);
+		}
+		TreeMap<String, Property> resolved = new TreeMap<String, Property>(properties);
+		for (Map.Entry<String, Property> e : resolved.entrySet()) {
+			if (e.getValue() instanceof InterpolatedProperty) {
+				e.setValue(PropertyInternPool.internProperty(new Property(e.getKey(), e.getValue().getValue())));
+			}
+		}
+		return new CompiledAppProperties(resolved);
 	}
 
 	/*
@@ -1,17 +1,27 @@
 package pl.karcisze.properties;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintStream;
-import java.net.MalformedURLException;
-import java.net.URL;
 import java.security.InvalidParameterException;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map.Entry;
-import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -32,6 +42,88 @@ public class TrialAppPropertiesManager implements AppPropertiesManager, AppPrope
 
 	protected PropertyCompletionHandler propertyCompletionHandler = PropertyCompletionHandler.getPropertyManager();
 
+	// executor used to fetch and parse property sources concurrently, or null if they are loaded one after another
+	private final ExecutorService loadExecutor;
+	// parsers of all formats, reused by all loads whatever sink they add Properties through
+	private final PropertyFileParserSniffing parsers = new PropertyFileParserSniffing();
+	private final PropertyFileParserSystem systemParser = new PropertyFileParserSystem();
+	// exporter used by printProperties, reused across prints under its own monitor
+	private final PropertyExporter printExporter = new PropertyExporter(PropertyExporter.Format.TEXT);
+	// fetcher of http:// sources not cached
+	private volatile HttpPropertySourceFetcher httpFetcher = new HttpPropertySourceFetcher();
+	// cache of http:// sources, or null if they are fetched on every load
+	private volatile HttpPropertySourceCache httpSourceCache = null;
+	// true if values are converted on first access rather than when they are added
+	private volatile boolean lazyConversion = false;
+	// true if String values with ${key} placeholders are interpolated, off by default so values are taken literally
+	private volatile boolean interpolation = false;
+
+	/*
+	 * Creates manager that loads property sources one after another
+	 */
+	public TrialAppPropertiesManager() {
+		this(null);
+	}
+
+	/*
+	 * Creates manager that fetches and parses property sources concurrently on a given executor.
+	 * Parsed sources are staged separately and merged in the original URI order, so keys in later URIs
+	 * still override keys of earlier URIs. Executor is not shut down by the manager.
+	 *
+	 * @param loadExecutor executor to fetch and parse property sources on, or null to load them one after another
+	 */
+	public TrialAppPropertiesManager(ExecutorService loadExecutor) {
+		this.loadExecutor = loadExecutor;
+	}
+
+	/*
+	 * Sets cache used for http:// sources. Sources that have not been modified since previous load are then
+	 * not downloaded nor parsed again.
+	 *
+	 * @param httpSourceCache cache of http:// sources, or null to fetch them on every load
+	 */
+	public void setHttpSourceCache(HttpPropertySourceCache httpSourceCache) {
+		this.httpSourceCache = httpSourceCache;
+	}
+
+	/*
+	 * Sets fetcher used for http:// sources that are not cached. By default, sources are fetched by a fetcher with
+	 * default timeouts and retries, without hedged requests.
+	 *
+	 * @param httpFetcher fetcher of http:// sources
+	 */
+	public void setHttpFetcher(HttpPropertySourceFetcher httpFetcher) {
+		if(httpFetcher==null){
+			throw new InvalidParameterException("httpFetcher paramter is null");
+		}
+		this.httpFetcher = httpFetcher;
+	}
+
+	/*
+	 * Sets lazy value mode. In lazy mode, values added are stored as raw Strings and converted to the type of their key
+	 * on first access (see LazyProperty). Values overridden by later sources and values never read are then not
+	 * converted at all.
+	 *
+	 * @param lazyConversion true to convert values lazily, false to convert them when they are added
+	 */
+	public void setLazyConversion(boolean lazyConversion) {
+		this.lazyConversion = lazyConversion;
+	}
+
+	/*
+	 * Sets interpolation mode. In interpolation mode, String values with "${key}" placeholders are stored as templates
+	 * and resolved against other Properties on first access (see InterpolatedProperty). Resolved values are converted
+	 * to the type of their key.
+	 *
+	 * Interpolation is off by default, so values with placeholders, e.g. "price in ${currency}" meant literally, are
+	 * not changed by sources that do not expect it.
+	 *
+	 * @param interpolation true to interpolate values with placeholders, false (default) to take them literally
+	 */
+	public void setInterpolation(boolean interpolation) {
+		this.interpolation = interpolation;
+	}
+
 	/**
 	 * Given a list of URIs and set of required keys, construct an AppProperties object.
 	 *
@@ -43,28 +135,284 @@ public class TrialAppPropertiesManager implements AppPropertiesManager, AppPrope
 		if(propUris==null){
 			throw new InvalidParameterException("propUris paramter is null");
 		}
+		if (loadExecutor != null) {
+			return loadPropsConcurrently(propUris);
+		}
 		TrialAppProperties appProperties = new TrialAppProperties();
 		PropertyFileParser parser = null;
 		for (String propUri : propUris) {
 			parser = selectParser(propUri);
 			LOGGER.log(Level.INFO, "parser selected:["+parser.getClass().getName()+"] for URI:["+propUri+"]");
+			loadPropsFromUri(appProperties, this, parser, propUri);
+		}
+		return appProperties;
+	}
 
-			if (propUri.startsWith(URI_FILE)) {
-				LOGGER.log(Level.INFO, "URI type ["+URI_FILE+"] detected");
-				loadPropsFromFile(appProperties, parser, propUri);
+	/*
+	 * Asynchronous variant of loadProps, without deadlines.
+	 *
+	 * @param propUris an ordered list of properties files to load, keys in later URIs override old keys
+	 * @return future of a fully constructed TrialProperties object
+	 */
+	public CompletableFuture<AppProperties> loadPropsAsync(List<String> propUris) {
+		return loadPropsAsync(propUris, 0, TimeUnit.MILLISECONDS);
+	}
+
+	/*
+	 * Asynchronous variant of loadProps. Every source is fetched and parsed as a separate task, on the executor of
+	 * this manager or, if it has none, on a shared pool of daemon threads, so the caller is never blocked.
+	 * Once all sources are parsed, they are merged in the original URI order.
+	 *
+	 * Returned future fails with AppPropertiesException as soon as any source fails or misses its deadline, and
+	 * tasks of other sources are then cancelled. Cancelling the returned future cancels tasks of all sources.
+	 * Cancelled tasks are interrupted.
+	 *
+	 * @param propUris an ordered list of properties files to load, keys in later URIs override old keys
+	 * @param sourceTimeout time each source may take to be fetched and parsed, or 0 for no deadline
+	 * @param unit unit of sourceTimeout
+	 * @return future of a fully constructed TrialProperties object
+	 */
+	public CompletableFuture<AppProperties> loadPropsAsync(List<String> propUris, long sourceTimeout, TimeUnit unit) {
+		if(propUris==null){
+			throw new InvalidParameterException("propUris paramter is null");
+		}
+		if(unit==null){
+			throw new InvalidParameterException("unit paramter is null");
+		}
+		final CompletableFuture<AppProperties> result = new CompletableFuture<AppProperties>();
+		final List<CompletableFuture<PropertySourceStaging>> stagings = new ArrayList<CompletableFuture<PropertySourceStaging>>(propUris.size());
+		final AtomicInteger remaining = new AtomicInteger(propUris.size());
+		long timeoutMillis = unit.toMillis(sourceTimeout);
+		for (String propUri : propUris) {
+			stagings.add(stagePropsAsync(propUri, timeoutMillis));
+		}
+		for (CompletableFuture<PropertySourceStaging> staging : stagings) {
+			staging.whenComplete(new BiConsumer<PropertySourceStaging, Throwable>() {
+				@Override
+				public void accept(PropertySourceStaging staged, Throwable t) {
+					if (t != null) {
+						result.completeExceptionally(unwrap(t));
+					} else if (remaining.decrementAndGet() == 0) {
+						mergeStagings(stagings, result);
+					}
+				}
+			});
+		}
+		result.whenComplete(new BiConsumer<AppProperties, Throwable>() {
+			@Override
+			public void accept(AppProperties props, Throwable t) {
+				if (t != null) {
+					for (CompletableFuture<PropertySourceStaging> staging : stagings) {
+						staging.cancel(true);
+					}
+				}
+			}
+		});
+		if (propUris.isEmpty()) {
+			result.complete(new TrialAppProperties());
+		}
+		return result;
+	}
+
+	/*
+	 * Starts task that fetches and parses a single source. Task is interrupted if the returned future is completed
+	 * before the task, e.g. because it is cancelled or misses its deadline.
+	 */
+	private CompletableFuture<PropertySourceStaging> stagePropsAsync(final String propUri, final long timeoutMillis) {
+		final CompletableFuture<PropertySourceStaging> staged = new CompletableFuture<PropertySourceStaging>();
+		ExecutorService executor = loadExecutor != null ? loadExecutor : AsyncExecutors.LOAD;
+		final Future<?> task = executor.submit(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					staged.complete(stagePropsFromUri(propUri));
+				} catch (Throwable t) {
+					staged.completeExceptionally(t);
+				}
+			}
+		});
+		final ScheduledFuture<?> deadline = timeoutMillis <= 0 ? null : AsyncExecutors.DEADLINES.schedule(new Runnable() {
+			@Override
+			public void run() {
+				staged.completeExceptionally(new AppPropertiesException("loading property source timed out after "
+						+timeoutMillis+" ms, URI:["+propUri+"]"));
+			}
+		}, timeoutMillis, TimeUnit.MILLISECONDS);
+		staged.whenComplete(new BiConsumer<PropertySourceStaging, Throwable>() {
+			@Override
+			public void accept(PropertySourceStaging staging, Throwable t) {
+				if (deadline != null) {
+					deadline.cancel(false);
+				}
+				if (t != null) {
+					task.cancel(true);
+				}
+			}
+		});
+		return staged;
+	}
+
+	private void mergeStagings(List<CompletableFuture<PropertySourceStaging>> stagings, CompletableFuture<AppProperties> result) {
+		try {
+			TrialAppProperties appProperties = new TrialAppProperties();
+			for (CompletableFuture<PropertySourceStaging> f : stagings) {
+				PropertySourceStaging staging = f.join();
+				LOGGER.log(Level.INFO, "merging "+staging.size()+" Properties staged from URI:["+staging.getPropUri()+"]");
+				staging.replayInto(this, appProperties);
 			}
-			if (propUri.startsWith(URI_HTTP)) {
-				LOGGER.log(Level.INFO, "URI type ["+URI_HTTP+"] detected");
-				loadPropsFromHttp(appProperties, parser, propUri);
+			result.complete(appProperties);
+		} catch (RuntimeException e) {
+			result.completeExceptionally(unwrap(e));
+		}
+	}
+
+	private static Throwable unwrap(Throwable t) {
+		if (t instanceof CompletionException && t.getCause() != null) {
+			t = t.getCause();
+		}
+		if (t instanceof AppPropertiesException || t instanceof CancellationException) {
+			return t;
+		}
+		return new AppPropertiesException("error loading property source", t);
+	}
+
+	/*
+	 * Shared daemon threads of loadPropsAsync, created on first use
+	 */
+	private static class AsyncExecutors {
+
+		static final ExecutorService LOAD = Executors.newCachedThreadPool(daemonThreads("AppProperties-load"));
+		static final ScheduledExecutorService DEADLINES = Executors.newSingleThreadScheduledExecutor(daemonThreads("AppProperties-deadlines"));
+
+		private static ThreadFactory daemonThreads(final String name) {
+			return new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+			};
+		}
+	}
+
+	/*
+	 * Fetches and parses all property sources concurrently into separate stagings, then merges stagings
+	 * in the original URI order.
+	 *
+	 * @param propUris an ordered list of properties files to load, keys in later URIs override old keys
+	 * @return a fully constructed TrialProperties object
+	 */
+	private AppProperties loadPropsConcurrently(List<String> propUris) {
+		List<Future<PropertySourceStaging>> stagings = new ArrayList<Future<PropertySourceStaging>>(propUris.size());
+		for (final String propUri : propUris) {
+			stagings.add(loadExecutor.submit(new Callable<PropertySourceStaging>() {
+				@Override
+				public PropertySourceStaging call() {
+					return stagePropsFromUri(propUri);
+				}
+			}));
+		}
+		TrialAppProperties appProperties = new TrialAppProperties();
+		try {
+			for (Future<PropertySourceStaging> f : stagings) {
+				PropertySourceStaging staging = awaitStaging(f);
+				LOGGER.log(Level.INFO, "merging "+staging.size()+" Properties staged from URI:["+staging.getPropUri()+"]");
+				staging.replayInto(this, appProperties);
 			}
-			if (propUri.startsWith(URI_CLASSPATH_RESOURCES)) {
-				LOGGER.log(Level.INFO, "URI type ["+URI_CLASSPATH_RESOURCES+"] detected");
-				loadPropsFromClasspathResources(appProperties, parser, propUri);
+		} finally {
+			for (Future<PropertySourceStaging> f : stagings) {
+				f.cancel(true);
 			}
 		}
 		return appProperties;
 	}
 
+	/*
+	 * Loads Properties of a single URI as a layer of LayeredAppProperties. Values are converted to types of their keys,
+	 * as by loadProps, but abstraction classes are not registered - layer holds Properties defined by the source only.
+	 *
+	 * @param propUri URI location of resource file with Property definitions
+	 * @return Properties defined by the source
+	 */
+	public TrialAppProperties loadLayer(String propUri) {
+		if(propUri==null){
+			throw new InvalidParameterException("propUri paramter is null");
+		}
+		PropertySourceStaging staging = stagePropsFromUri(propUri);
+		List<String> keys = staging.getKeys();
+		List<Object> values = staging.getValues();
+		TrialAppProperties layer = new TrialAppProperties();
+		synchronized (this) {
+			for (int i = 0; i < keys.size(); i++) {
+				layer.putProperty(keys.get(i), completeProperty(keys.get(i), values.get(i), Level.FINE));
+			}
+		}
+		LOGGER.log(Level.INFO, "layer of {0} Properties loaded from URI:[{1}]", new Object[] { layer.properties.size(), propUri });
+		return layer;
+	}
+
+	/*
+	 * Fetches and parses Properties of a single URI into new staging
+	 *
+	 * @param propUri URI location of resource file with Property definitions
+	 * @return staging with parsed Properties
+	 */
+	private PropertySourceStaging stagePropsFromUri(String propUri) {
+		PropertySourceStaging staging = new PropertySourceStaging(propUri);
+		PropertyFileParser parser = selectParser(propUri);
+		LOGGER.log(Level.INFO, "parser selected:["+parser.getClass().getName()+"] for URI:["+propUri+"]");
+		loadPropsFromUri(null, staging, parser, propUri);
+		return staging;
+	}
+
+	/*
+	 * @param f staging being fetched and parsed
+	 * @return staging, once it is ready
+	 */
+	private PropertySourceStaging awaitStaging(Future<PropertySourceStaging> f) {
+		try {
+			return f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AppPropertiesException("interrupted while loading property sources",e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new AppPropertiesException("error loading property source",e.getCause());
+		}
+	}
+
+	/*
+	 * Loads Properties from given URI, with location type selected by URI prefix
+	 *
+	 * @param appProperties container to put loaded Properties into
+	 * @param sink sink the parser calls back to add parsed Properties
+	 * @param parser parser to be used to load properties from given URI
+	 * @param propUri URI location of resource file with Property definitions
+	 */
+	private void loadPropsFromUri(TrialAppProperties appProperties, PropertySink sink, PropertyFileParser parser, String propUri) {
+		if (propUri.startsWith(URI_FILE)) {
+			LOGGER.log(Level.INFO, "URI type ["+URI_FILE+"] detected");
+			loadPropsFromFile(appProperties, sink, parser, propUri);
+		}
+		if (propUri.startsWith(URI_HTTP)) {
+			LOGGER.log(Level.INFO, "URI type ["+URI_HTTP+"] detected");
+			loadPropsFromHttp(appProperties, sink, parser, propUri);
+		}
+		if (propUri.startsWith(URI_CLASSPATH_RESOURCES)) {
+			LOGGER.log(Level.INFO, "URI type ["+URI_CLASSPATH_RESOURCES+"] detected");
+			loadPropsFromClasspathResources(appProperties, sink, parser, propUri);
+		}
+		if (PropertyFileParserSystem.isSystemUri(propUri)) {
+			LOGGER.log(Level.INFO, "URI type [{0}] detected", propUri.substring(0, propUri.indexOf(':') + 1));
+			((PropertyFileParserSystem) parser).parseSourceInto(propUri, sink, appProperties);
+		}
+	}
+
 	/**
 	 * Given instance of TrialAppProperties, adds into a Property of a given key and value.
 	 * Actual value object put into appProperties container can be different than value passed as a parameter.
@@ -91,34 +439,98 @@ public class TrialAppPropertiesManager implements AppPropertiesManager, AppPrope
 		if(_value==null){
 			throw new InvalidParameterException("_value paramter is null");
 		}
-		Object value = null;
+		addPropertyLocked(appProperties, key, _value, Level.INFO);
+	}
+
+	/**
+	 * Given instance of TrialAppProperties, adds Properties of a whole parsed property source, with the same result as
+	 * addProperty called for every key/value pair in order. Type completion and closure expansion of all pairs is
+	 * done in a single pass, under a single acquisition of the monitor of this manager. Single pairs are logged at FINE
+	 * level only.
+	 *
+	 * @param appProperties container to put new Properties into
+	 * @param keys keys of Properties to be put into appProperties container
+	 * @param values values of Properties to be put into appProperties container, in the same order as keys
+	 */
+	public synchronized void addProperties(TrialAppProperties appProperties, List<String> keys, List<Object> values) {
+		if(appProperties==null){
+			throw new InvalidParameterException("appProperties paramter is null");
+		}
+		if(keys==null){
+			throw new InvalidParameterException("keys paramter is null");
+		}
+		if(values==null){
+			throw new InvalidParameterException("values paramter is null");
+		}
+		int size = keys.size();
+		if(values.size()!=size){
+			throw new InvalidParameterException("different lengths of keys and values");
+		}
+		for (int i = 0; i < size; i++) {
+			String key = keys.get(i);
+			Object value = values.get(i);
+			if(key==null){
+				throw new InvalidParameterException("null in keys in position "+i);
+			}
+			if(value==null){
+				throw new InvalidParameterException("null in values in position "+i);
+			}
+			addPropertyLocked(appProperties, key, value, Level.FINE);
+		}
+		appProperties.settlePending();
+		LOGGER.log(Level.INFO, "{0} Properties added", size);
+	}
+
+	/*
+	 * Creates Property of a given key, with value converted to type of the key if types do not match.
+	 *
+	 * @param level logging level of messages about the Property
+	 */
+	private Property completeProperty(String key, Object _value, Level level) {
+		Property property = null;
 		String typeByKey = propertyCompletionHandler.getPropertyType(key);
 		String valueType = _value.getClass().getName();
-		if(typeByKey.equals(valueType)){
-			LOGGER.log(Level.INFO, "Property value passed to add matches preconfigured type:["+typeByKey+"]");
-			value = _value;
+		InterpolatedProperty interpolated = interpolation && _value instanceof String
+				? InterpolatedProperty.create(key, (String) _value, propertyCompletionHandler) : null;
+		if(interpolated != null){
+			LOGGER.log(level, "Property value passed to add has placeholders - resolving on first access");
+			property = interpolated;
+		}else if(typeByKey.equals(valueType)){
+			LOGGER.log(level, "Property value passed to add matches preconfigured type:[{0}]", typeByKey);
+			property = new Property(key, _value);
+		}else if(Property.PROPERTY_EMPTYVALUE.equals(_value)){
+			LOGGER.log(level, "Empty property value passed to add - registering unset Property");
+			property = new Property(key, _value);
+		}else if(lazyConversion){
+			LOGGER.log(level, "Type of property value passed:[{0}] to add does NOT match preconfigured type:[{1}] - converting on first access",
+					new Object[] { valueType, typeByKey });
+			property = new LazyProperty(key, _value.toString(), propertyCompletionHandler);
 		}else{
-			LOGGER.log(Level.INFO, "Type of property value passed:["+valueType+"] to add does NOT match preconfigured type:["+typeByKey+"]");
-			value = propertyCompletionHandler.createCompletedPropertyValue(key, _value.toString());
-		}
-		Property property = new Property(key, value);
-
-		if (!appProperties.properties.containsKey(key)) {
-			TreeSet<String> closure = propertyCompletionHandler.getPropertyClosure(key);
-			if (closure != null) {
-				for (String kc : closure) {
-					Property pc = Property.getEmptyProperty(kc);
-					LOGGER.log(Level.INFO, "Closure Property with key:["+kc+"] being registered:["+pc.toString()+"]");
-					appProperties.properties.put(kc, pc);
-				}
-			}
+			LOGGER.log(level, "Type of property value passed:[{0}] to add does NOT match preconfigured type:[{1}]",
+					new Object[] { valueType, typeByKey });
+			property = new Property(key, propertyCompletionHandler.createCompletedPropertyValue(key, _value.toString()));
 		}
-		if (appProperties.properties.containsKey(key)) {
-			LOGGER.log(Level.INFO, "Property with key:["+key+"] being replaced with:["+property.toString()+"]");
-			appProperties.properties.replace(key, property);
+		return property;
+	}
+
+	/*
+	 * Adds a single Property, with its abstraction class. Caller holds the monitor of this manager.
+	 *
+	 * @param level logging level of messages about the Property
+	 */
+	private void addPropertyLocked(TrialAppProperties appProperties, String key, Object _value, Level level) {
+		Property property = completeProperty(key, _value, level);
+
+		boolean registered = appProperties.containsProperty(key);
+		if (registered) {
+			LOGGER.log(level, "Property with key:[{0}] being replaced with value:[{1}]", new Object[] { key, _value });
 		} else {
-			LOGGER.log(Level.INFO, "New Property with key:["+key+"] being registered:["+property.toString()+"]");
-			appProperties.properties.put(key, property);
+			LOGGER.log(level, "New Property with key:[{0}] being registered with value:[{1}]", new Object[] { key, _value });
+		}
+		// key is registered before its abstraction class, so it keeps the form it is added in
+		appProperties.putProperty(key, property);
+		if (!registered) {
+			appProperties.putClosure(key);
 		}
 	}
 
@@ -126,10 +538,11 @@ public class TrialAppPropertiesManager implements AppPropertiesManager, AppPrope
 	 * Loads Properties from classpath:resources/ located file
 	 *
 	 * @param appProperties container to put loaded Properties into
+	 * @param sink sink the parser calls back to add parsed Properties
 	 * @param parser parser to be used to load properties from given URI
 	 * @param propUri URI location of resource file with Property definitions
 	 */
-	private void loadPropsFromClasspathResources(TrialAppProperties appProperties, PropertyFileParser parser,
+	private void loadPropsFromClasspathResources(TrialAppProperties appProperties, PropertySink sink, PropertyFileParser parser,
 			String propUri) {
 			String path = propUri.substring(URI_CLASSPATH_RESOURCES.length());
 			InputStream is = ClassLoader.getSystemResourceAsStream(path);
@@ -137,7 +550,7 @@ public class TrialAppPropertiesManager implements AppPropertiesManager, AppPrope
 				//TODO
 				throw new RuntimeException("resource can not be accessed");
 			}
-			parser.parseInto(is, appProperties);
+			parser.parseInto(is, sink, appProperties);
 			try {
 				is.close();
 			} catch (IOException e) {
@@ -149,76 +562,63 @@ public class TrialAppPropertiesManager implements AppPropertiesManager, AppPrope
 	 * Loads Properties from http:// located file
 	 *
 	 * @param appProperties container to put loaded Properties into
+	 * @param sink sink the parser calls back to add parsed Properties
 	 * @param parser parser to be used to load properties from given URI
 	 * @param propUri URI location of resource file with Property definitions
 	 */
-	private void loadPropsFromHttp(TrialAppProperties appProperties, PropertyFileParser parser, String propUri) {
-		URL url = null;
-		try {
-			url = new URL(propUri);
-		} catch (MalformedURLException e) {
-			throw new AppPropertiesException("error creating URL from URI:["+propUri+"]",e);
+	private void loadPropsFromHttp(final TrialAppProperties appProperties, final PropertySink sink, final PropertyFileParser parser,
+			String propUri) {
+		HttpPropertySourceCache cache = httpSourceCache;
+		if (cache != null) {
+			PropertySourceStaging staging = cache.load(new PropertySourceStaging(propUri), parser);
+			staging.replayInto(sink, appProperties);
+			return;
 		}
-		InputStream is = null;
-		try {
-			is = url.openStream();
-			parser.parseInto(is, appProperties);
-		} catch (IOException e) {
-			throw new AppPropertiesException("error opening stream for URL:["+url.toString()+"]",e);
-		} finally {
-			if (is != null) {
-				try {
-					is.close();
-				} catch (IOException e) {
-					LOGGER.log(Level.ALL, "error closing input stream" + e);
+		httpFetcher.fetch(propUri, new HttpPropertySourceFetcher.BodyHandler() {
+			@Override
+			public void handle(InputStream body, String contentType) {
+				if (parser instanceof PropertyFileParserSniffing) {
+					((PropertyFileParserSniffing) parser).parseInto(body, contentType, sink, appProperties);
+				} else {
+					parser.parseInto(body, sink, appProperties);
 				}
 			}
-		}
+		});
 	}
 
 	/*
 	 * Loads Properties from file:// located file
 	 *
 	 * @param appProperties container to put loaded Properties into
+	 * @param sink sink the parser calls back to add parsed Properties
 	 * @param parser parser to be used to load properties from given URI
 	 * @param propUri URI location of resource file with Property definitions
 	 */
-	private void loadPropsFromFile(TrialAppProperties appProperties, PropertyFileParser parser, String propUri) {
+	private void loadPropsFromFile(TrialAppProperties appProperties, PropertySink sink, PropertyFileParser parser, String propUri) {
 		String path = propUri.substring(URI_FILE.length());
 		File f = new File(path);
-		FileInputStream fis = null;
 		try {
-			fis = new FileInputStream(f);
-			parser.parseInto(fis, appProperties);
+			parser.parseFileInto(f, sink, appProperties);
 		} catch (FileNotFoundException e) {
 			throw new AppPropertiesException("file not found for URI:["+propUri+"]",e);
-		} finally {
-			if (fis != null) {
-				try {
-					fis.close();
-				} catch (IOException e) {
-					LOGGER.log(Level.ALL, "error closing file input stream" + e);
-				}
-			}
+		} catch (IOException e) {
+			throw new AppPropertiesException("error reading file for URI:["+propUri+"]",e);
 		}
 	}
 
 	/*
-	 * @param propUri used to decide on what parser to used. It depends on file extension. Currently "*.json" and "*.properties" are supported.
-	 * @return parser to be used to load Properties
+	 * @param propUri used to decide on what parser to used. It depends on file extension of formats registered in
+	 *                PropertyFileFormats - built-in "*.json", "*.properties" and "*.propbin", and formats found by
+	 *                ServiceLoader. Format of URIs without known extension is selected when their content is read.
+	 *                "env:" and "sysprop:" URIs are supported regardless of extension.
+	 * @return parser to be used to load Properties. Parsers are created once and reused by all loads.
 	 */
 	private PropertyFileParser selectParser(String propUri) {
-		PropertyFileParser parser = null;
-		if (propUri.endsWith(".json")) {
-			parser = new PropertyFileParserJSON(this);
+		if (PropertyFileParserSystem.isSystemUri(propUri)) {
+			return systemParser;
 		}
-		if (propUri.endsWith(".properties")) {
-			parser = new PropertyFileParserProperty(this);
-		}
-		if (parser == null) {
-			throw new AppPropertiesException("unsupported property file type of URI:["+propUri+"]");
-		}
-		return parser;
+		PropertyFileFormat format = PropertyFileFormats.forUri(propUri);
+		return format == null ? parsers : parsers.getParser(format);
 	}
 
 	/**
@@ -236,15 +636,12 @@ public class TrialAppPropertiesManager implements AppPropertiesManager, AppPrope
 		if(sync==null){
 			throw new InvalidParameterException("sync paramter is null");
 		}
-		TrialAppProperties tprops = null;
 		try {
-			tprops = (TrialAppProperties) props;
-		} catch (ClassCastException e) {
-			throw new AppPropertiesException("props to be printed in not of TrialAppProperties type - which is invalid",e);
-		}
-		for (Entry<String, Property> e : tprops.properties.entrySet()) {
-			Property p = e.getValue();
-			sync.println(p);
+			synchronized (printExporter) {
+				printExporter.write(props, sync);
+			}
+		} catch (IOException e) {
+			throw new AppPropertiesException("error printing properties",e);
 		}
 	}
 }
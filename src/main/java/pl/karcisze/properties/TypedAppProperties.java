@@ -0,0 +1,44 @@
+package pl.karcisze.properties;
+
+/**
+ * This interface extends AppProperties by adding accessors that return Property values as primitives,
+ * so numeric and boolean settings can be read without casting and unboxing the value returned by get.
+ *
+ * Type of a Property is the type declared for its key in PropertyCompletionHandler.
+ *
+ * @author Krzysztof Arciszewski
+ */
+public interface TypedAppProperties extends AppProperties {
+
+    /**
+     * @param key a property key, handled without case sensitivity. '.' and '_' are treated as equivalent
+     * @param defaultValue value returned if the property is not available
+     * @return value of a java.lang.Long or java.lang.Integer property, or defaultValue if it is missing or unset
+     * @throws AppPropertiesException if the property is of another type
+     */
+    long getLong(String key, long defaultValue);
+
+    /**
+     * @param key a property key, handled without case sensitivity. '.' and '_' are treated as equivalent
+     * @param defaultValue value returned if the property is not available
+     * @return value of a java.lang.Long or java.lang.Integer property, or defaultValue if it is missing or unset
+     * @throws AppPropertiesException if the property is of another type or its value does not fit into int
+     */
+    int getInt(String key, int defaultValue);
+
+    /**
+     * @param key a property key, handled without case sensitivity. '.' and '_' are treated as equivalent
+     * @param defaultValue value returned if the property is not available
+     * @return value of a java.lang.Double, java.lang.Long or java.lang.Integer property, or defaultValue if it is missing or unset
+     * @throws AppPropertiesException if the property is of another type
+     */
+    double getDouble(String key, double defaultValue);
+
+    /**
+     * @param key a property key, handled without case sensitivity. '.' and '_' are treated as equivalent
+     * @param defaultValue value returned if the property is not available
+     * @return value of a java.lang.Boolean property, or defaultValue if it is missing or unset
+     * @throws AppPropertiesException if the property is of another type
+     */
+    boolean getBoolean(String key, boolean defaultValue);
+}
@@ -0,0 +1,93 @@
+package pl.karcisze.properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class CompiledAppPropertiesTest {
+
+	@Test
+	public void testEmpty() {
+		CompiledAppProperties props = new TrialAppProperties().freeze();
+		assertEquals("", props.toString());
+		assertTrue(props.isValid());
+		assertNull(props.get("JDBC_URL"));
+	}
+
+	@Test
+	public void testConfig() {
+		TrialAppProperties tap = load("classpath:resources/config.json");
+		CompiledAppProperties props = tap.freeze();
+		assertEquals(tap.toString(), props.toString());
+		assertEquals(tap.getKnownProperties(), props.getKnownProperties());
+		assertEquals("job.timeout, java.lang.Long, 3600", props.get("JOB_TIMEOUT").toString());
+		assertEquals("jpa.showSql, java.lang.Boolean, false", props.get("jpa_showsql").toString());
+		assertNull(props.get("job.timeou"));
+		assertTrue(props.isValid());
+	}
+
+	@Test
+	public void testInvalidProps() {
+		TrialAppProperties tap = load("classpath:resources/jdbc_incomplete.json");
+		CompiledAppProperties props = tap.freeze();
+		tap.clear();
+		assertFalse(props.isValid());
+		assertEquals("[JDBC_PASSWORD, JDBC_USERNAME]", props.getMissingProperties().toString());
+		assertEquals("JDBC_URL, java.lang.String, jdbc:mysql://localhost/test", props.get("jdbc.url").toString());
+	}
+
+	@Test
+	public void testTypedAccessors() {
+		CompiledAppProperties props = load("classpath:resources/config.json").freeze();
+		assertEquals(3600L, props.getLong("job.timeout", -1L));
+		assertEquals(3600, props.getInt("JOB_TIMEOUT", -1));
+		assertEquals(3600.0, props.getDouble("job.timeout", -1.0), 0.0);
+		assertEquals(2.4, props.getDouble("score_factor", -1.0), 0.0);
+		assertFalse(props.getBoolean("jpa.showSql", true));
+		assertEquals(-1L, props.getLong("hibernate.show_sql", -1L));
+		assertTrue(props.getBoolean("hibernate.show_sql", true));
+	}
+
+	@Test
+	public void testTypedAccessorsUnset() {
+		TrialAppProperties tap = load("classpath:resources/aws.properties");
+		tap.clear();
+		CompiledAppProperties props = tap.freeze();
+		assertEquals(7L, props.getLong("aws_account_id", 7L));
+	}
+
+	@Test(expected = AppPropertiesException.class)
+	public void testTypedAccessorsWrongType() {
+		load("classpath:resources/config.json").freeze().getLong("score.factor", -1L);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testClear() {
+		load("classpath:resources/jdbc.properties").freeze().clear();
+	}
+
+	@Test
+	public void testManyKeys() {
+		TrialAppProperties tap = new TrialAppProperties();
+		for (int i = 0; i < 20000; i++) {
+			tap.putProperty("key." + i, new Property("key." + i, "value" + i));
+		}
+		CompiledAppProperties props = tap.freeze();
+		for (int i = 0; i < 20000; i++) {
+			assertEquals("value" + i, ((Property) props.get("KEY_" + i)).getValue());
+			assertNull(props.get("key." + (i + 20000)));
+		}
+	}
+
+	private TrialAppProperties load(String propUri) {
+		List<String> propUris = new ArrayList<String>();
+		propUris.add(propUri);
+		return (TrialAppProperties) new TrialAppPropertiesManager().loadProps(propUris);
+	}
+}
@@ -0,0 +1,125 @@
+package pl.karcisze.properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class HttpPropertySourceCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private HttpServer server;
+	private volatile String body = "job.timeout=10\n";
+	private volatile String etag = "\"v1\"";
+	private final AtomicInteger fullResponses = new AtomicInteger();
+	private final AtomicInteger notModifiedResponses = new AtomicInteger();
+
+	@Before
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/config.properties", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+					notModifiedResponses.incrementAndGet();
+					exchange.sendResponseHeaders(304, -1);
+					exchange.close();
+					return;
+				}
+				fullResponses.incrementAndGet();
+				byte[] content = body.getBytes("ISO-8859-1");
+				exchange.getResponseHeaders().set("ETag", etag);
+				exchange.sendResponseHeaders(200, content.length);
+				OutputStream os = exchange.getResponseBody();
+				os.write(content);
+				os.close();
+			}
+		});
+		server.start();
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+	}
+
+	@Test
+	public void testNotModifiedReusesParsedSource() throws IOException {
+		HttpPropertySourceCache cache = new HttpPropertySourceCache(folder.newFolder());
+		PropertySourceStaging first = load(cache);
+		PropertySourceStaging second = load(cache);
+		assertSame(first, second);
+		assertEquals(1, fullResponses.get());
+		assertEquals(1, notModifiedResponses.get());
+
+		body = "job.timeout=20\n";
+		etag = "\"v2\"";
+		PropertySourceStaging third = load(cache);
+		assertNotSame(first, third);
+		assertEquals(2, fullResponses.get());
+	}
+
+	@Test
+	public void testStoredBodySurvivesNewCache() throws IOException {
+		java.io.File directory = folder.newFolder();
+		load(new HttpPropertySourceCache(directory));
+		PropertySourceStaging staging = load(new HttpPropertySourceCache(directory));
+		assertEquals(1, staging.size());
+		assertEquals(1, fullResponses.get());
+		assertEquals(1, notModifiedResponses.get());
+	}
+
+	@Test
+	public void testMissingBodyIsFetchedUnconditionally() throws IOException {
+		java.io.File directory = folder.newFolder();
+		load(new HttpPropertySourceCache(directory));
+		for (java.io.File f : directory.listFiles()) {
+			if (f.getName().endsWith(".body")) {
+				assertTrue(f.delete());
+			}
+		}
+		PropertySourceStaging staging = load(new HttpPropertySourceCache(directory));
+		assertEquals(1, staging.size());
+		assertEquals(2, fullResponses.get());
+		assertEquals(0, notModifiedResponses.get());
+	}
+
+	@Test
+	public void testManagerWithCache() throws IOException {
+		TrialAppPropertiesManager m = new TrialAppPropertiesManager();
+		m.setHttpSourceCache(new HttpPropertySourceCache(folder.newFolder()));
+		List<String> propUris = new ArrayList<String>();
+		propUris.add(uri());
+		assertEquals("job.timeout, java.lang.Long, 10", m.loadProps(propUris).get("job.timeout").toString());
+		assertEquals("job.timeout, java.lang.Long, 10", m.loadProps(propUris).get("job.timeout").toString());
+		assertEquals(1, notModifiedResponses.get());
+	}
+
+	private PropertySourceStaging load(HttpPropertySourceCache cache) {
+		PropertySourceStaging staging = new PropertySourceStaging(uri());
+		return cache.load(staging, new PropertyFileParserProperty());
+	}
+
+	private String uri() {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + "/config.properties";
+	}
+}
@@ -0,0 +1,205 @@
+package pl.karcisze.properties;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class HttpPropertySourceFetcherTest {
+
+	private static final String BODY = "job.timeout=10\n";
+
+	private HttpServer server;
+	private final CountDownLatch release = new CountDownLatch(1);
+	private final AtomicInteger requests = new AtomicInteger();
+	private final Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<Integer>());
+
+	@Before
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/config.properties", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				requests.incrementAndGet();
+				clientPorts.add(exchange.getRemoteAddress().getPort());
+				byte[] content = BODY.getBytes("ISO-8859-1");
+				String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+				if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+					ByteArrayOutputStream bos = new ByteArrayOutputStream();
+					GZIPOutputStream gzip = new GZIPOutputStream(bos);
+					gzip.write(content);
+					gzip.close();
+					content = bos.toByteArray();
+					exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+				}
+				respond(exchange, 200, content);
+			}
+		});
+		server.createContext("/slow.properties", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				await();
+				respond(exchange, 200, BODY.getBytes("ISO-8859-1"));
+			}
+		});
+		server.createContext("/first-slow.properties", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				if (requests.incrementAndGet() == 1) {
+					await();
+				}
+				respond(exchange, 200, BODY.getBytes("ISO-8859-1"));
+			}
+		});
+		server.createContext("/first-unavailable.properties", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				if (requests.incrementAndGet() == 1) {
+					respond(exchange, 503, "unavailable".getBytes("ISO-8859-1"));
+				} else {
+					respond(exchange, 200, BODY.getBytes("ISO-8859-1"));
+				}
+			}
+		});
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.start();
+	}
+
+	@After
+	public void tearDown() {
+		release.countDown();
+		server.stop(0);
+	}
+
+	@Test
+	public void testGzipAndConnectionReuse() throws IOException {
+		HttpPropertySourceFetcher fetcher = new HttpPropertySourceFetcher();
+		for (int i = 0; i < 3; i++) {
+			assertArrayEquals(BODY.getBytes("ISO-8859-1"), fetcher.fetch(uri("/config.properties")));
+		}
+		assertEquals(3, requests.get());
+		assertEquals(1, clientPorts.size());
+	}
+
+	@Test
+	public void testReadTimeout() {
+		HttpPropertySourceFetcher fetcher = new HttpPropertySourceFetcher(1000, 200);
+		fetcher.setMaxRetries(0);
+		long start = System.currentTimeMillis();
+		try {
+			fetcher.fetch(uri("/slow.properties"));
+			fail("read timeout expected");
+		} catch (AppPropertiesException e) {
+			assertTrue(System.currentTimeMillis() - start < 5000);
+		}
+	}
+
+	@Test
+	public void testRetryOnServerError() throws IOException {
+		HttpPropertySourceFetcher fetcher = new HttpPropertySourceFetcher();
+		assertArrayEquals(BODY.getBytes("ISO-8859-1"), fetcher.fetch(uri("/first-unavailable.properties")));
+		assertEquals(2, requests.get());
+
+		fetcher.setMaxRetries(0);
+		requests.set(0);
+		try {
+			fetcher.fetch(uri("/first-unavailable.properties"));
+			fail("HTTP status 503 expected");
+		} catch (AppPropertiesException e) {
+			assertTrue(e.getMessage().contains("503"));
+		}
+	}
+
+	@Test
+	public void testHedgedRequest() throws IOException {
+		HttpPropertySourceFetcher fetcher = new HttpPropertySourceFetcher();
+		fetcher.setHedging(0.95, 100);
+		long start = System.currentTimeMillis();
+		assertArrayEquals(BODY.getBytes("ISO-8859-1"), fetcher.fetch(uri("/first-slow.properties")));
+		assertTrue(System.currentTimeMillis() - start < 5000);
+		assertEquals(2, requests.get());
+	}
+
+	@Test
+	public void testStreamedBody() throws IOException {
+		HttpPropertySourceFetcher fetcher = new HttpPropertySourceFetcher();
+		fetcher.setMaxRetries(0);
+		final ByteArrayOutputStream body = new ByteArrayOutputStream();
+		for (int i = 0; i < 2; i++) {
+			body.reset();
+			fetcher.fetch(uri("/config.properties"), new HttpPropertySourceFetcher.BodyHandler() {
+				@Override
+				public void handle(InputStream is, String contentType) throws IOException {
+					// first byte only, rest is drained by the fetcher
+					body.write(is.read());
+				}
+			});
+			assertEquals("j", body.toString("ISO-8859-1"));
+		}
+		assertEquals(1, clientPorts.size());
+		requests.set(0);
+		try {
+			fetcher.fetch(uri("/first-unavailable.properties"), new HttpPropertySourceFetcher.BodyHandler() {
+				@Override
+				public void handle(InputStream is, String contentType) {
+					fail("body of 503 must not be handled");
+				}
+			});
+			fail("HTTP status 503 expected");
+		} catch (AppPropertiesException e) {
+			assertTrue(e.getMessage().contains("503"));
+		}
+	}
+
+	@Test
+	public void testManagerWithFetcher() {
+		TrialAppPropertiesManager m = new TrialAppPropertiesManager();
+		m.setHttpFetcher(new HttpPropertySourceFetcher(1000, 1000));
+		List<String> propUris = new ArrayList<String>();
+		propUris.add(uri("/config.properties"));
+		assertEquals("job.timeout, java.lang.Long, 10", m.loadProps(propUris).get("job.timeout").toString());
+	}
+
+	private void await() {
+		try {
+			release.await(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void respond(HttpExchange exchange, int status, byte[] content) throws IOException {
+		exchange.sendResponseHeaders(status, content.length);
+		OutputStream os = exchange.getResponseBody();
+		os.write(content);
+		os.close();
+	}
+
+	private String uri(String path) {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+	}
+}
@@ -0,0 +1,126 @@
+package pl.karcisze.properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class InterpolatedPropertyTest {
+
+	private TrialAppPropertiesManager manager;
+	private TrialAppProperties tap;
+
+	@Before
+	public void setUp() {
+		manager = new TrialAppPropertiesManager();
+		manager.setInterpolation(true);
+		tap = new TrialAppProperties();
+	}
+
+	@Test
+	public void testTemplateParsing() {
+		assertTrue(InterpolatedProperty.isTemplate("jdbc:mysql://${db.host}/${db.name}"));
+		assertFalse(InterpolatedProperty.isTemplate("price in $"));
+		assertFalse(InterpolatedProperty.isTemplate("${}"));
+		assertFalse(InterpolatedProperty.isTemplate("${unclosed"));
+		InterpolatedProperty p = new InterpolatedProperty("JDBC_URL", "jdbc:mysql://${db.host}/${ db.name }?${",
+				PropertyCompletionHandler.getPropertyManager());
+		assertEquals("[db.host, db.name]", p.getReferences().toString());
+		assertEquals("[db.host]", InterpolatedProperty.create("greeting", "hello ${db.host}", PropertyCompletionHandler.getPropertyManager())
+				.getReferences().toString());
+		assertNull(InterpolatedProperty.create("price", "price in $", PropertyCompletionHandler.getPropertyManager()));
+	}
+
+	@Test
+	public void testResolution() {
+		manager.addProperty(tap, "JDBC_URL", "jdbc:mysql://${db.host}/${DB_NAME}");
+		manager.addProperty(tap, "db.host", "localhost");
+		manager.addProperty(tap, "db.name", "test");
+		assertEquals("jdbc:mysql://localhost/test", value("JDBC_URL"));
+	}
+
+	@Test
+	public void testTypeCompletionOfResolvedValue() {
+		manager.addProperty(tap, "base.timeout", "36");
+		manager.addProperty(tap, "job.timeout", "${base.timeout}0");
+		assertEquals(Long.valueOf(360), value("job.timeout"));
+		manager.addProperty(tap, "score.factor", "${job.timeout}");
+		assertEquals(Double.valueOf(360), value("score.factor"));
+	}
+
+	@Test
+	public void testOnlyDependentsRecomputed() {
+		manager.addProperty(tap, "db.host", "localhost");
+		manager.addProperty(tap, "db.name", "test");
+		manager.addProperty(tap, "db.address", "${db.host}:3306");
+		manager.addProperty(tap, "JDBC_URL", "jdbc:mysql://${db.address}/${db.name}");
+		manager.addProperty(tap, "greeting", "hello ${db.name}");
+		assertEquals("jdbc:mysql://localhost:3306/test", value("JDBC_URL"));
+		assertEquals("hello test", value("greeting"));
+		assertEquals("[db.address, JDBC_URL]", tap.getDependentKeys("DB_HOST").toString());
+
+		manager.addProperty(tap, "db.host", "remote");
+		assertFalse(((LazyProperty) tap.get("db.address")).isConverted());
+		assertFalse(((LazyProperty) tap.get("JDBC_URL")).isConverted());
+		assertTrue(((LazyProperty) tap.get("greeting")).isConverted());
+		assertEquals("jdbc:mysql://remote:3306/test", value("JDBC_URL"));
+	}
+
+	@Test
+	public void testUnresolvedReferenceIsMissing() {
+		manager.addProperty(tap, "greeting", "hello ${user.name}");
+		assertFalse(tap.isValid());
+		assertEquals("[greeting]", tap.getMissingProperties().toString());
+
+		manager.addProperty(tap, "user.name", "admin");
+		assertTrue(tap.isValid());
+		assertEquals("hello admin", value("greeting"));
+
+		tap.removeProperty("user.name");
+		assertEquals("[greeting]", tap.getMissingProperties().toString());
+	}
+
+	@Test
+	public void testCycle() {
+		manager.addProperty(tap, "a", "${b}");
+		manager.addProperty(tap, "b", "x${c}");
+		manager.addProperty(tap, "c", "${A}");
+		manager.addProperty(tap, "d", "${c}");
+		assertEquals("[a, b, c, d]", tap.getMissingProperties().toString());
+
+		manager.addProperty(tap, "c", "y");
+		assertTrue(tap.isValid());
+		assertEquals("xy", value("a"));
+		assertEquals("y", value("d"));
+	}
+
+	@Test
+	public void testFreezeResolves() {
+		manager.addProperty(tap, "db.host", "localhost");
+		manager.addProperty(tap, "greeting", "hello ${db.host}");
+		CompiledAppProperties frozen = tap.freeze();
+		manager.addProperty(tap, "db.host", "remote");
+		assertEquals("hello remote", value("greeting"));
+		assertEquals("hello localhost", ((Property) frozen.get("greeting")).getValue());
+	}
+
+	@Test
+	public void testInterpolationDisabled() {
+		// off by default
+		TrialAppProperties literal = new TrialAppProperties();
+		new TrialAppPropertiesManager().addProperty(literal, "greeting", "hello ${db.host}");
+		assertFalse(literal.get("greeting") instanceof InterpolatedProperty);
+
+		manager.setInterpolation(false);
+		manager.addProperty(tap, "db.host", "localhost");
+		manager.addProperty(tap, "greeting", "hello ${db.host}");
+		assertEquals("hello ${db.host}", value("greeting"));
+	}
+
+	private Object value(String key) {
+		return ((Property) tap.get(key)).getValue();
+	}
+}
@@ -0,0 +1,124 @@
+package pl.karcisze.properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LayeredAppPropertiesTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testMatchesLoadProps() {
+		List<String> propUris = new ArrayList<String>();
+		propUris.add("classpath:resources/jdbc.properties");
+		propUris.add("classpath:resources/aws.json");
+		propUris.add("classpath:resources/config.json");
+		propUris.add("classpath:resources/jdbc_incomplete.json");
+		TrialAppPropertiesManager manager = new TrialAppPropertiesManager();
+		AppProperties merged = manager.loadProps(propUris);
+		LayeredAppProperties layered = new LayeredAppProperties(manager, propUris);
+		assertEquals(merged.toString(), layered.toString());
+		assertEquals(merged.getMissingProperties(), layered.getMissingProperties());
+		assertEquals(3, layered.getWinningLayer("JDBC_URL"));
+		assertEquals(0, layered.getWinningLayer("JDBC_PASSWORD"));
+		assertEquals(1, layered.getWinningLayer("aws_region_id"));
+		assertEquals(-2, layered.getWinningLayer("unknown"));
+
+		// cleared keys stay registered, with no layer winning
+		layered.clear();
+		assertFalse(layered.isValid());
+		assertEquals(-1, layered.getWinningLayer("JDBC_URL"));
+		assertEquals(-2, layered.getWinningLayer("unknown"));
+	}
+
+	@Test
+	public void testReplaceLayer() throws IOException {
+		File override = folder.newFile("override.properties");
+		write(override, "job.timeout=1\nJDBC_URL=jdbc:mysql://localhost/override\n");
+		List<String> propUris = new ArrayList<String>();
+		propUris.add("classpath:resources/config.json");
+		propUris.add("file://" + override.getPath());
+		TrialAppPropertiesManager manager = new TrialAppPropertiesManager();
+		LayeredAppProperties layered = new LayeredAppProperties(manager, propUris);
+		assertEquals(manager.loadProps(propUris).toString(), layered.toString());
+		assertFalse(layered.isValid());
+		Object scoreFactor = layered.get("score.factor");
+
+		write(override, "job.timeout=2\nsynthetic.key=x\n");
+		layered.reloadLayer(1);
+		assertEquals(manager.loadProps(propUris).toString(), layered.toString());
+		assertTrue(layered.isValid());
+		assertNull(layered.get("JDBC_DRIVER"));
+		assertEquals(1, layered.getWinningLayer("job.timeout"));
+		assertSame(scoreFactor, layered.get("score.factor"));
+	}
+
+	@Test
+	public void testInterpolatedPropertyResolvedOnGet() throws IOException {
+		File base = folder.newFile("base.properties");
+		write(base, "db.host=localhost\ngreeting=hello ${db.host}\n");
+		File override = folder.newFile("host.properties");
+		write(override, "db.host=first\n");
+		List<String> propUris = new ArrayList<String>();
+		propUris.add("file://" + base.getPath());
+		propUris.add("file://" + override.getPath());
+		TrialAppPropertiesManager manager = new TrialAppPropertiesManager();
+		manager.setInterpolation(true);
+		LayeredAppProperties layered = new LayeredAppProperties(manager, propUris);
+		Property greeting = (Property) layered.get("greeting");
+		assertFalse(greeting instanceof InterpolatedProperty);
+		assertEquals("hello first", greeting.getValue());
+
+		write(override, "db.host=second\n");
+		layered.reloadLayer(1);
+		assertEquals("hello first", greeting.getValue());
+		assertEquals("hello second", ((Property) layered.get("greeting")).getValue());
+	}
+
+	@Test
+	public void testIndexRemove() {
+		PropertyKeyIndex index = new PropertyKeyIndex();
+		Map<String, Property> expected = new HashMap<String, Property>();
+		Random random = new Random(7);
+		for (int i = 0; i < 20000; i++) {
+			String key = "key." + random.nextInt(500);
+			if (random.nextBoolean()) {
+				Property p = new Property(key, Integer.toString(i));
+				index.put(key, p);
+				expected.put(key, p);
+			} else {
+				assertSame(expected.remove(key), index.remove(key.toUpperCase()));
+			}
+		}
+		assertEquals(expected.size(), index.size());
+		for (int i = 0; i < 500; i++) {
+			assertSame(expected.get("key." + i), index.get("KEY_" + i));
+		}
+	}
+
+	private void write(File f, String content) throws IOException {
+		FileOutputStream fos = new FileOutputStream(f);
+		try {
+			fos.write(content.getBytes("ISO-8859-1"));
+		} finally {
+			fos.close();
+		}
+	}
+}
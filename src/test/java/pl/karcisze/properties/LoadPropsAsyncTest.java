@@ -0,0 +1,111 @@
+package pl.karcisze.properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class LoadPropsAsyncTest {
+
+	private HttpServer server;
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	@Before
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/slow.properties", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					release.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				byte[] content = "job.timeout=10\n".getBytes("ISO-8859-1");
+				exchange.sendResponseHeaders(200, content.length);
+				OutputStream os = exchange.getResponseBody();
+				os.write(content);
+				os.close();
+			}
+		});
+		server.setExecutor(java.util.concurrent.Executors.newCachedThreadPool());
+		server.start();
+	}
+
+	@After
+	public void tearDown() {
+		release.countDown();
+		server.stop(0);
+	}
+
+	@Test
+	public void testMatchesLoadProps() throws Exception {
+		List<String> propUris = new ArrayList<String>();
+		propUris.add("classpath:resources/jdbc.properties");
+		propUris.add("classpath:resources/aws.json");
+		propUris.add("classpath:resources/config.json");
+		propUris.add("classpath:resources/jdbc_incomplete.json");
+		TrialAppPropertiesManager manager = new TrialAppPropertiesManager();
+		AppProperties props = manager.loadPropsAsync(propUris).get(10, TimeUnit.SECONDS);
+		assertEquals(manager.loadProps(propUris).toString(), props.toString());
+	}
+
+	@Test
+	public void testSourceDeadline() throws Exception {
+		List<String> propUris = new ArrayList<String>();
+		propUris.add("classpath:resources/config.json");
+		propUris.add(slowUri());
+		long start = System.currentTimeMillis();
+		CompletableFuture<AppProperties> f = new TrialAppPropertiesManager().loadPropsAsync(propUris, 200, TimeUnit.MILLISECONDS);
+		try {
+			f.get(10, TimeUnit.SECONDS);
+			fail("deadline expected");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof AppPropertiesException);
+			assertTrue(e.getCause().getMessage().contains("timed out"));
+		}
+		assertTrue(System.currentTimeMillis() - start < 5000);
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		List<String> propUris = new ArrayList<String>();
+		propUris.add(slowUri());
+		CompletableFuture<AppProperties> f = new TrialAppPropertiesManager().loadPropsAsync(propUris);
+		assertTrue(f.cancel(true));
+		assertTrue(f.isCancelled());
+		release.countDown();
+	}
+
+	@Test
+	public void testSlowSourceOverlaps() throws Exception {
+		List<String> propUris = new ArrayList<String>();
+		propUris.add("classpath:resources/config.json");
+		propUris.add(slowUri());
+		CompletableFuture<AppProperties> f = new TrialAppPropertiesManager().loadPropsAsync(propUris);
+		assertTrue(!f.isDone());
+		release.countDown();
+		assertEquals("job.timeout, java.lang.Long, 10", f.get(10, TimeUnit.SECONDS).get("job.timeout").toString());
+	}
+
+	private String slowUri() {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + "/slow.properties";
+	}
+}
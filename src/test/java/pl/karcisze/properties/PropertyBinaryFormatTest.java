@@ -0,0 +1,120 @@
+package pl.karcisze.properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.amazonaws.regions.Regions;
+
+public class PropertyBinaryFormatTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		List<String> propUris = new ArrayList<String>();
+		propUris.add("classpath:resources/aws.properties");
+		propUris.add("classpath:resources/config.json");
+		propUris.add("classpath:resources/jdbc_incomplete.json");
+		TrialAppPropertiesManager m = new TrialAppPropertiesManager();
+		TrialAppProperties loaded = (TrialAppProperties) m.loadProps(propUris);
+
+		File f = folder.newFile("snapshot" + PropertyBinaryFormat.EXTENSION);
+		PropertyBinaryFormat.write(loaded, f);
+		List<String> binaryUris = new ArrayList<String>();
+		binaryUris.add("file://" + f.getPath());
+		AppProperties props = m.loadProps(binaryUris);
+
+		assertEquals(loaded.toString(), props.toString());
+		assertEquals(loaded.getMissingProperties(), props.getMissingProperties());
+		assertEquals(Long.valueOf(3600), ((Property) props.get("job.timeout")).getValue());
+	}
+
+	@Test
+	public void testReadCompiled() throws IOException {
+		List<String> propUris = new ArrayList<String>();
+		propUris.add("classpath:resources/aws.properties");
+		propUris.add("classpath:resources/config.json");
+		propUris.add("classpath:resources/jdbc_incomplete.json");
+		TrialAppProperties loaded = (TrialAppProperties) new TrialAppPropertiesManager().loadProps(propUris);
+
+		File f = folder.newFile("snapshot" + PropertyBinaryFormat.EXTENSION);
+		PropertyBinaryFormat.write(loaded, f);
+		CompiledAppProperties props = PropertyBinaryFormat.read(f);
+
+		assertEquals(loaded.toString(), props.toString());
+		assertEquals(loaded.getMissingProperties(), props.getMissingProperties());
+		assertEquals(3600, props.getLong("job.timeout", 0));
+		assertEquals(loaded.isClosureComplete("JDBC_URL"), props.isClosureComplete("JDBC_URL"));
+		assertEquals(loaded.isClosureComplete("aws_region_id"), props.isClosureComplete("aws_region_id"));
+		assertTrue(props.isClosureComplete("job.timeout"));
+	}
+
+	@Test
+	public void testCorruptData() throws IOException {
+		TrialAppProperties props = new TrialAppProperties();
+		props.putProperty("aws_region_id", new Property("aws_region_id", Regions.US_EAST_1));
+		File f = folder.newFile("corrupt" + PropertyBinaryFormat.EXTENSION);
+		PropertyBinaryFormat.write(props, f);
+		byte[] valid = Files.readAllBytes(f.toPath());
+		int entry = ByteBuffer.wrap(valid).getInt(PropertyBinaryFormat.HEADER_SIZE);
+
+		// negative number of entries
+		assertInvalid(f, corrupt(valid, 4, -1));
+		// negative key length
+		assertInvalid(f, corrupt(valid, entry, 0xffff0000 | (valid[entry + 2] & 0xff) << 8 | valid[entry + 3] & 0xff));
+		// entry offset out of data
+		assertInvalid(f, corrupt(valid, PropertyBinaryFormat.HEADER_SIZE, valid.length));
+		// unknown region name
+		String data = new String(valid, StandardCharsets.ISO_8859_1);
+		assertInvalid(f, data.replace(Regions.US_EAST_1.getName(), "zz-east-1").getBytes(StandardCharsets.ISO_8859_1));
+		// truncated
+		assertInvalid(f, Arrays.copyOf(valid, valid.length - 3));
+	}
+
+	private static byte[] corrupt(byte[] valid, int index, int value) {
+		byte[] data = valid.clone();
+		ByteBuffer.wrap(data).putInt(index, value);
+		return data;
+	}
+
+	private static void assertInvalid(File f, byte[] data) throws IOException {
+		Files.write(f.toPath(), data);
+		List<String> propUris = new ArrayList<String>();
+		propUris.add("file://" + f.getPath());
+		try {
+			new TrialAppPropertiesManager().loadProps(propUris);
+			fail("corrupt data loaded");
+		} catch (AppPropertiesException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("invalid binary property file:[file://" + f.getPath() + "]"));
+		}
+		try {
+			PropertyBinaryFormat.read(f);
+			fail("corrupt data read");
+		} catch (AppPropertiesException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("invalid binary property file:[file://" + f.getPath() + "]"));
+		}
+	}
+
+	@Test(expected = AppPropertiesException.class)
+	public void testInvalidHeader() throws IOException {
+		File f = folder.newFile("invalid" + PropertyBinaryFormat.EXTENSION);
+		List<String> propUris = new ArrayList<String>();
+		propUris.add("file://" + f.getPath());
+		new TrialAppPropertiesManager().loadProps(propUris);
+	}
+}
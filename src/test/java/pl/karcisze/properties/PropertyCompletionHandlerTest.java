@@ -2,6 +2,10 @@ package pl.karcisze.properties;
 
 import static org.junit.Assert.*;
 
+import java.net.InetAddress;
+import java.net.URI;
+import java.time.Duration;
+
 import org.junit.Test;
 
 public class PropertyCompletionHandlerTest {
@@ -68,4 +72,72 @@ public class PropertyCompletionHandlerTest {
 				"JDBC_DRIVER:(JDBC_DRIVER,java.lang.Class)(JDBC_PASSWORD,java.lang.String)(JDBC_URL,java.net.URL)(JDBC_USERNAME,java.lang.String)" +
 				"JDBC_PASSWORD:(JDBC_DRIVER,java.lang.Class)(JDBC_PASSWORD,java.lang.String)(JDBC_URL,java.net.URL)(JDBC_USERNAME,java.lang.String)", s);
 	}
+
+	@Test
+	public void testConverters() throws Exception {
+		String[][] propertyKeysInitial = { { "timeout", "endpoint", "host", "retries" } };
+		String[][] propertyTypesInitial = { { "java.time.Duration", "java.net.URI", "java.net.InetAddress", "java.lang.Integer" } };
+		PropertyCompletionHandler pm = new PropertyCompletionHandler(propertyKeysInitial, propertyTypesInitial);
+		assertEquals(Duration.ofSeconds(30), pm.createCompletedPropertyValue("timeout", "PT30S"));
+		assertEquals(new URI("https://authserver/v1/auth"), pm.createCompletedPropertyValue("endpoint", "https://authserver/v1/auth"));
+		assertEquals(InetAddress.getByName("127.0.0.1"), pm.createCompletedPropertyValue("host", "127.0.0.1"));
+		assertEquals(InetAddress.getByName("::1"), pm.createCompletedPropertyValue("host", "[::1]"));
+		// host names are not resolved, and malformed literals are not taken for host names
+		assertEquals(Property.PROPERTY_EMPTYVALUE, pm.createCompletedPropertyValue("host", "localhost"));
+		assertEquals(Property.PROPERTY_EMPTYVALUE, pm.createCompletedPropertyValue("host", "127.0.0.256"));
+		assertEquals(Integer.valueOf(3), pm.createCompletedPropertyValue("retries", "3"));
+		assertEquals(Property.PROPERTY_EMPTYVALUE, pm.createCompletedPropertyValue("timeout", "30 seconds"));
+		assertEquals(Property.PROPERTY_EMPTYVALUE, pm.createCompletedPropertyValue("retries", "three"));
+		assertEquals("undeclared", pm.createCompletedPropertyValue("undeclared", "undeclared"));
+	}
+
+	@Test
+	public void testServiceLoaderConverter() {
+		String[][] propertyKeysInitial = { { "cache.size" } };
+		String[][] propertyTypesInitial = { { ByteSizeConverter.TYPE } };
+		PropertyCompletionHandler pm = new PropertyCompletionHandler(propertyKeysInitial, propertyTypesInitial);
+		assertEquals(Long.valueOf(10 * 1024 * 1024), pm.createCompletedPropertyValue("cache.size", "10MB"));
+		assertEquals(Long.valueOf(512), pm.createCompletedPropertyValue("cache.size", "512"));
+		assertEquals(Property.PROPERTY_EMPTYVALUE, pm.createCompletedPropertyValue("cache.size", "MB"));
+	}
+
+	@Test(expected = AppPropertiesException.class)
+	public void testUnsupportedType() {
+		String[][] propertyKeysInitial = { { "JDBC_DRIVER" } };
+		String[][] propertyTypesInitial = { { "java.lang.Class" } };
+		PropertyCompletionHandler pm = new PropertyCompletionHandler(propertyKeysInitial, propertyTypesInitial);
+		pm.createCompletedPropertyValue("JDBC_DRIVER", "com.mysql.jdbc.Driver");
+	}
+
+	/*
+	 * Converter of byte sizes, e.g. "512", "64KB", "10MB", registered in META-INF/services of test resources
+	 */
+	public static class ByteSizeConverter implements PropertyValueConverter {
+
+		public static final String TYPE = "bytes";
+
+		public String getType() {
+			return TYPE;
+		}
+
+		public Object convert(String value) {
+			long unit = 1;
+			String number = value;
+			if (value.endsWith("KB")) {
+				unit = 1024;
+			} else if (value.endsWith("MB")) {
+				unit = 1024 * 1024;
+			} else if (value.endsWith("GB")) {
+				unit = 1024 * 1024 * 1024;
+			}
+			if (unit != 1) {
+				number = value.substring(0, value.length() - 2);
+			}
+			try {
+				return Long.valueOf(Long.parseLong(number) * unit);
+			} catch (NumberFormatException e) {
+				return Property.PROPERTY_EMPTYVALUE;
+			}
+		}
+	}
 }
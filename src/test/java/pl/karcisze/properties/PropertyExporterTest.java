@@ -0,0 +1,84 @@
+package pl.karcisze.properties;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PropertyExporterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testTextMatchesPrintln() throws IOException {
+		TrialAppProperties props = load();
+		props.putProperty("accented", new Property("accented", "caf\u00e9"));
+		TrialAppPropertiesManager manager = new TrialAppPropertiesManager();
+		// printed in encoding of the stream, and the exporter is reused between prints
+		for (String encoding : new String[] { "UTF-8", "ISO-8859-1", "UTF-8" }) {
+			ByteArrayOutputStream expected = new ByteArrayOutputStream();
+			PrintStream ps = new PrintStream(expected, true, encoding);
+			for (Property p : props.properties.values()) {
+				ps.println(p);
+			}
+			ByteArrayOutputStream printed = new ByteArrayOutputStream();
+			manager.printProperties(props, new PrintStream(printed, false, encoding));
+			assertArrayEquals(expected.toByteArray(), printed.toByteArray());
+		}
+	}
+
+	@Test
+	public void testPropertiesRoundTrip() throws IOException {
+		TrialAppProperties props = load();
+		props.putProperty("odd key", new Property("odd key", " =value: with\ttabs #\u00e9"));
+		assertEquals(props.toString(), reload(props, PropertyExporter.Format.PROPERTIES, ".properties").toString());
+	}
+
+	@Test
+	public void testJSONRoundTrip() throws IOException {
+		TrialAppProperties props = load();
+		props.putProperty("quoted", new Property("quoted", "say \"hi\"\n\u00e9\ud83d\ude00"));
+		assertEquals(props.toString(), reload(props, PropertyExporter.Format.JSON, ".json").toString());
+	}
+
+	@Test
+	public void testEmptyJSON() throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		new PropertyExporter(PropertyExporter.Format.JSON).export(new TrialAppProperties(), bos);
+		assertEquals("{}\n", bos.toString("UTF-8"));
+	}
+
+	private TrialAppProperties load() {
+		List<String> propUris = new ArrayList<String>();
+		propUris.add("classpath:resources/jdbc.properties");
+		propUris.add("classpath:resources/aws.json");
+		propUris.add("classpath:resources/config.json");
+		propUris.add("classpath:resources/jdbc_incomplete.json");
+		return (TrialAppProperties) new TrialAppPropertiesManager().loadProps(propUris);
+	}
+
+	private AppProperties reload(TrialAppProperties props, PropertyExporter.Format format, String extension) throws IOException {
+		File f = folder.newFile("export" + extension);
+		FileOutputStream fos = new FileOutputStream(f);
+		try {
+			new PropertyExporter(format).export(props, Channels.newChannel(fos));
+		} finally {
+			fos.close();
+		}
+		List<String> propUris = new ArrayList<String>();
+		propUris.add("file://" + f.getPath());
+		return new TrialAppPropertiesManager().loadProps(propUris);
+	}
+}
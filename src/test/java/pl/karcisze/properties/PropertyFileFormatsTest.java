@@ -0,0 +1,226 @@
+package pl.karcisze.properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class PropertyFileFormatsTest {
+
+	private HttpServer server;
+
+	@Before
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/v1/config", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+				respond(exchange, "{\"job.timeout\": 10}");
+			}
+		});
+		server.createContext("/v1/sniffed", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange, "\n  {\"job\": {\"timeout\": 20}}");
+			}
+		});
+		server.start();
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+	}
+
+	@Test
+	public void testForUri() {
+		assertSame(PropertyFileFormats.JSON, PropertyFileFormats.forUri("http://host/config.json"));
+		assertSame(PropertyFileFormats.PROPERTIES, PropertyFileFormats.forUri("file:///etc/app.properties"));
+		assertSame(PropertyFileFormats.BINARY, PropertyFileFormats.forUri("file:///etc/app.propbin"));
+		assertEquals("colon", PropertyFileFormats.forUri("classpath:resources/colon.kv").getName());
+		assertNull(PropertyFileFormats.forUri("http://host/v1/config"));
+	}
+
+	@Test
+	public void testForContentType() {
+		assertSame(PropertyFileFormats.JSON, PropertyFileFormats.forContentType("application/json; charset=utf-8"));
+		assertSame(PropertyFileFormats.PROPERTIES, PropertyFileFormats.forContentType("TEXT/X-JAVA-PROPERTIES"));
+		assertNull(PropertyFileFormats.forContentType("text/html"));
+		assertNull(PropertyFileFormats.forContentType(null));
+	}
+
+	@Test
+	public void testSniff() throws IOException {
+		assertSame(PropertyFileFormats.JSON, sniff("\uFEFF {\"a\": 1}".getBytes(StandardCharsets.UTF_8)));
+		assertSame(PropertyFileFormats.PROPERTIES, sniff("a=1\n".getBytes(StandardCharsets.ISO_8859_1)));
+		assertEquals("colon", sniff("#colon\na: 1\n".getBytes(StandardCharsets.ISO_8859_1)).getName());
+		assertSame(PropertyFileFormats.PROPERTIES, sniff("# comment\n\n  job.timeout : 1\n".getBytes(StandardCharsets.ISO_8859_1)));
+		assertSame(PropertyFileFormats.PROPERTIES, sniff("# comments only\n".getBytes(StandardCharsets.ISO_8859_1)));
+		for (String page : new String[] { "<!DOCTYPE html>\n<html lang=\"en\"></html>", "<html lang=\"en\">", "Not Found\n" }) {
+			try {
+				sniff(page.getBytes(StandardCharsets.ISO_8859_1));
+				fail("page sniffed as property source: " + page);
+			} catch (AppPropertiesException e) {
+				// expected
+			}
+		}
+
+		TrialAppProperties props = new TrialAppProperties();
+		props.putProperty("job.timeout", new Property("job.timeout", Long.valueOf(5)));
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		PropertyBinaryFormat.write(props, bos);
+		assertSame(PropertyFileFormats.BINARY, sniff(bos.toByteArray()));
+	}
+
+	@Test
+	public void testSniffingParserReusesParsers() {
+		TrialAppPropertiesManager manager = new TrialAppPropertiesManager();
+		PropertyFileParserSniffing parser = new PropertyFileParserSniffing();
+		assertSame(parser.getParser(PropertyFileFormats.JSON), parser.getParser(PropertyFileFormats.JSON));
+
+		TrialAppProperties props = new TrialAppProperties();
+		parser.parseInto(new ByteArrayInputStream("job.timeout=7\n".getBytes(StandardCharsets.ISO_8859_1)), manager, props);
+		parser.parseInto(new ByteArrayInputStream("{\"score.factor\": 2.5}".getBytes(StandardCharsets.UTF_8)), manager, props);
+		assertEquals("job.timeout, java.lang.Long, 7", props.get("job.timeout").toString());
+		assertEquals("score.factor, java.lang.Double, 2.5", props.get("score.factor").toString());
+
+		// the same parsers serve loads through any sink
+		PropertySourceStaging staging = new PropertySourceStaging("memory:");
+		parser.parseInto(new ByteArrayInputStream("job.timeout=8\n".getBytes(StandardCharsets.ISO_8859_1)), staging, null);
+		assertEquals("[job.timeout]", staging.getKeys().toString());
+		assertEquals("[8]", staging.getValues().toString());
+	}
+
+	@Test
+	public void testDocumentContentTypeRejected() {
+		assertTrue(PropertyFileFormats.isDocumentContentType("text/html; charset=utf-8"));
+		assertTrue(PropertyFileFormats.isDocumentContentType("application/problem+xml"));
+		assertFalse(PropertyFileFormats.isDocumentContentType("text/plain"));
+		assertFalse(PropertyFileFormats.isDocumentContentType(null));
+
+		TrialAppPropertiesManager manager = new TrialAppPropertiesManager();
+		PropertyFileParserSniffing parser = new PropertyFileParserSniffing();
+		TrialAppProperties props = new TrialAppProperties();
+		try {
+			parser.parseInto(new ByteArrayInputStream("job.timeout=7\n".getBytes(StandardCharsets.ISO_8859_1)), "text/html", manager, props);
+			fail("text/html source expected to be rejected");
+		} catch (AppPropertiesException e) {
+			assertNull(props.get("job.timeout"));
+		}
+		parser.parseInto(new ByteArrayInputStream("job.timeout=7\n".getBytes(StandardCharsets.ISO_8859_1)), "text/plain", manager, props);
+		assertEquals("job.timeout, java.lang.Long, 7", props.get("job.timeout").toString());
+	}
+
+	@Test
+	public void testExtensionlessHttpSources() {
+		List<String> propUris = new ArrayList<String>();
+		propUris.add(uri("/v1/config"));
+		assertEquals("job.timeout, java.lang.Long, 10", new TrialAppPropertiesManager().loadProps(propUris).get("job.timeout").toString());
+		propUris.add(uri("/v1/sniffed"));
+		assertEquals("job.timeout, java.lang.Long, 20", new TrialAppPropertiesManager().loadProps(propUris).get("job.timeout").toString());
+	}
+
+	@Test
+	public void testFormatFoundByServiceLoader() {
+		List<String> propUris = new ArrayList<String>();
+		propUris.add("classpath:resources/colon.kv");
+		AppProperties props = new TrialAppPropertiesManager().loadProps(propUris);
+		assertEquals("job.timeout, java.lang.Long, 42", props.get("job.timeout").toString());
+		assertEquals("score.factor, java.lang.Double, 1.5", props.get("score.factor").toString());
+	}
+
+	private static PropertyFileFormat sniff(byte[] content) {
+		return PropertyFileFormats.sniff(content, Math.min(content.length, PropertyFileFormats.SNIFF_LENGTH));
+	}
+
+	private static void respond(HttpExchange exchange, String body) throws IOException {
+		byte[] content = body.getBytes(StandardCharsets.UTF_8);
+		exchange.sendResponseHeaders(200, content.length);
+		OutputStream os = exchange.getResponseBody();
+		os.write(content);
+		os.close();
+	}
+
+	private String uri(String path) {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+	}
+
+	/*
+	 * Format of "key: value" lines starting with "#colon" line, registered in META-INF/services of test resources
+	 */
+	public static class ColonFormat implements PropertyFileFormat {
+
+		private static final byte[] MARKER = "#colon".getBytes(StandardCharsets.ISO_8859_1);
+
+		public String getName() {
+			return "colon";
+		}
+
+		public String[] getExtensions() {
+			return new String[] { ".kv" };
+		}
+
+		public String[] getContentTypes() {
+			return new String[] { "text/x-colon" };
+		}
+
+		public boolean sniff(byte[] head, int length) {
+			if (length < MARKER.length) {
+				return false;
+			}
+			for (int i = 0; i < MARKER.length; i++) {
+				if (head[i] != MARKER[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		public PropertyFileParser createParser() {
+			return new PropertyFileParser() {
+				@Override
+				protected void parseInto(InputStream fi, PropertySink propertySink, TrialAppProperties appProperties) {
+					List<String> keys = new ArrayList<String>();
+					List<Object> values = new ArrayList<Object>();
+					try {
+						BufferedReader reader = new BufferedReader(new InputStreamReader(fi, StandardCharsets.ISO_8859_1));
+						String line;
+						while ((line = reader.readLine()) != null) {
+							int colon = line.indexOf(':');
+							if (!line.startsWith("#") && colon > 0) {
+								keys.add(line.substring(0, colon).trim());
+								values.add(line.substring(colon + 1).trim());
+							}
+						}
+					} catch (IOException e) {
+						throw new AppPropertiesException("error parsing colon format", e);
+					}
+					propertySink.addProperties(appProperties, keys, values);
+				}
+			};
+		}
+	}
+}
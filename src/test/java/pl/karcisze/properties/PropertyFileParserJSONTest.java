@@ -0,0 +1,57 @@
+package pl.karcisze.properties;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+
+import org.junit.Test;
+
+public class PropertyFileParserJSONTest {
+
+	@Test
+	public void testFlat() throws UnsupportedEncodingException {
+		TrialAppProperties tap = parse("{\"job.timeout\": 3600, \"score.factor\": 2.4, \"jpa.showSql\": false, \"name\": \"a\\\"b\\u0041\"}");
+		assertEquals("job.timeout, java.lang.Long, 3600;jpa.showSql, java.lang.Boolean, false;"
+				+ "name, java.lang.String, a\"bA;score.factor, java.lang.Double, 2.4;", tap.toString());
+	}
+
+	@Test
+	public void testNested() throws UnsupportedEncodingException {
+		TrialAppProperties tap = parse("{\"hibernate\": {\"show_sql\": true, \"generate_statistics\": \"false\"}, \"job\": {\"timeout\": -5}}");
+		assertEquals("hibernate.generate_statistics, java.lang.Boolean, false;hibernate.show_sql, java.lang.Boolean, true;"
+				+ "job.timeout, java.lang.Long, -5;", tap.toString());
+	}
+
+	@Test
+	public void testNullAndArray() throws UnsupportedEncodingException {
+		TrialAppProperties tap = parse("{\"auth.endpoint.uri\": null, \"list\": [1, \"x\\\"y\", {\"a\": [true, null]}, []]}");
+		assertEquals("auth.endpoint.uri, java.lang.String, ;list, java.lang.String, [1,\"x\\\"y\",{\"a\":[true,null]},[]];", tap.toString());
+		assertEquals("[auth.endpoint.uri]", tap.getMissingProperties().toString());
+	}
+
+	@Test
+	public void testLargeNumbers() throws UnsupportedEncodingException {
+		TrialAppProperties tap = parse("{\"job.timeout\": 9223372036854775807, \"score.factor\": 9223372036854775808}");
+		assertEquals(Long.MAX_VALUE, ((Property) tap.get("job.timeout")).getValue());
+		assertEquals(9223372036854775808.0, ((Property) tap.get("score.factor")).getValue());
+		tap = parse("{\"score.factor\": 1e3}");
+		assertEquals(1000.0, ((Property) tap.get("score.factor")).getValue());
+	}
+
+	@Test(expected = AppPropertiesException.class)
+	public void testInvalid() throws UnsupportedEncodingException {
+		parse("{\"a\": 1,}");
+	}
+
+	@Test(expected = AppPropertiesException.class)
+	public void testNotObject() throws UnsupportedEncodingException {
+		parse("[1]");
+	}
+
+	private TrialAppProperties parse(String json) throws UnsupportedEncodingException {
+		TrialAppProperties tap = new TrialAppProperties();
+		new PropertyFileParserJSON().parseInto(new ByteArrayInputStream(json.getBytes("UTF-8")), new TrialAppPropertiesManager(), tap);
+		return tap;
+	}
+}
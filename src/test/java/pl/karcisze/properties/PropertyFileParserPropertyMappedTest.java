@@ -0,0 +1,65 @@
+package pl.karcisze.properties;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PropertyFileParserPropertyMappedTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testSimple() throws IOException {
+		assertSameAsProperties("JDBC_URL=jdbc:mysql://localhost/test\njob.timeout = 3600\r\naws_region_id:us-east-1\n");
+	}
+
+	@Test
+	public void testCommentsAndBlankLines() throws IOException {
+		assertSameAsProperties("# comment \\\n  a=1\n\n   \t\n! other comment\r\n  b  =  2  \n#c=3");
+	}
+
+	@Test
+	public void testSeparators() throws IOException {
+		assertSameAsProperties("a b\nc   :   d\ne\tf=g\nh\ni=\n=j\n:k\n");
+	}
+
+	@Test
+	public void testEscapes() throws IOException {
+		assertSameAsProperties("key\\ with\\=sep\\:s = v\\tal\\nue\\u0041\\\\\\x\nunicode=\\u017c\\u00F3\n\u00e9t\u00e9=\u00e0\n");
+	}
+
+	@Test
+	public void testContinuations() throws IOException {
+		assertSameAsProperties("a = first \\\n     second \\\r\n\tthird\nb\\\n  c = d\ne = f\\\\\ng = h \\\n# not a comment\n"
+				+ "i \\\n = \\\n  j\nlast=end\\");
+	}
+
+	private void assertSameAsProperties(String content) throws IOException {
+		File f = folder.newFile();
+		FileOutputStream fos = new FileOutputStream(f);
+		try {
+			fos.write(content.getBytes("ISO-8859-1"));
+		} finally {
+			fos.close();
+		}
+		TrialAppPropertiesManager m = new TrialAppPropertiesManager();
+		TrialAppProperties expected = new TrialAppProperties();
+		FileInputStream fis = new FileInputStream(f);
+		try {
+			new PropertyFileParserProperty().parseInto(fis, m, expected);
+		} finally {
+			fis.close();
+		}
+		TrialAppProperties actual = new TrialAppProperties();
+		new PropertyFileParserPropertyMapped().parseFileInto(f, m, actual);
+		assertEquals(expected.toString(), actual.toString());
+	}
+}
@@ -0,0 +1,71 @@
+package pl.karcisze.properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class PropertyFileParserSystemTest {
+
+	@After
+	public void tearDown() {
+		System.clearProperty("apptest.HIBERNATE_SHOW_SQL");
+		System.clearProperty("apptest.jdbc.url");
+		System.clearProperty("apptest.job_timeout");
+		System.clearProperty("apptest.custom.key");
+		System.clearProperty("other.custom.key");
+	}
+
+	@Test
+	public void testSystemPropertiesWithPrefix() {
+		System.setProperty("apptest.HIBERNATE_SHOW_SQL", "true");
+		System.setProperty("apptest.jdbc.url", "jdbc:mysql://localhost/test");
+		System.setProperty("apptest.job_timeout", "3600");
+		System.setProperty("apptest.custom.key", "custom");
+		System.setProperty("other.custom.key", "other");
+		TrialAppProperties props = load("sysprop:APPTEST_");
+
+		assertEquals("hibernate.show_sql, java.lang.Boolean, true", props.get("hibernate.show_sql").toString());
+		assertEquals("job.timeout, java.lang.Long, 3600", props.get("job.timeout").toString());
+		assertEquals("jdbc:mysql://localhost/test", ((Property) props.get("JDBC_URL")).getValue());
+		assertEquals("custom", ((Property) props.get("custom_key")).getValue());
+		assertNull(props.get("other.custom.key"));
+		// declared key brings its abstraction class
+		assertTrue(props.getMissingProperties().contains("JDBC_DRIVER"));
+		assertEquals(props.properties.size(), 4 + props.getMissingProperties().size());
+	}
+
+	@Test
+	public void testLaterSourceOverrides() {
+		System.setProperty("apptest.job_timeout", "10");
+		List<String> propUris = new ArrayList<String>();
+		propUris.add("classpath:resources/config.json");
+		propUris.add("sysprop:apptest.");
+		AppProperties props = new TrialAppPropertiesManager().loadProps(propUris);
+		assertEquals("job.timeout, java.lang.Long, 10", props.get("job.timeout").toString());
+	}
+
+	@Test
+	public void testEnvironment() {
+		Map<String, String> env = System.getenv();
+		String name = env.keySet().iterator().next();
+		TrialAppProperties props = load("env:" + name.substring(0, 1));
+		String key = name.substring(1);
+		if (!key.isEmpty() && PropertyCompletionHandler.getPropertyManager().getDeclaredKey(key) == null) {
+			assertEquals(env.get(name), ((Property) props.get(key)).getValue());
+		}
+		assertTrue(props.properties.size() <= env.size());
+	}
+
+	private static TrialAppProperties load(String propUri) {
+		List<String> propUris = new ArrayList<String>();
+		propUris.add(propUri);
+		return (TrialAppProperties) new TrialAppPropertiesManager().loadProps(propUris);
+	}
+}
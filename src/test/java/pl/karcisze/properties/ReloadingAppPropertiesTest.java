@@ -0,0 +1,245 @@
+package pl.karcisze.properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReloadingAppPropertiesTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testReloadOnChange() throws Exception {
+		File f = folder.newFile("app.properties");
+		write(f, "job.timeout=1\n");
+		List<String> propUris = new ArrayList<String>();
+		propUris.add("classpath:resources/config.json");
+		propUris.add("file://" + f.getPath());
+		ReloadingAppProperties props = new ReloadingAppProperties(new TrialAppPropertiesManager(), propUris, 50);
+		try {
+			assertEquals(1L, props.getLong("job.timeout", -1L));
+			assertEquals(2.4, props.getDouble("score.factor", -1.0), 0.0);
+
+			write(f, "job.timeout=2\n");
+			long deadline = System.currentTimeMillis() + 20000;
+			while (props.getLong("job.timeout", -1L) != 2L && System.currentTimeMillis() < deadline) {
+				Thread.sleep(20);
+			}
+			assertEquals(2L, props.getLong("job.timeout", -1L));
+			assertEquals(2.4, props.getDouble("score.factor", -1.0), 0.0);
+		} finally {
+			props.close();
+		}
+	}
+
+	@Test
+	public void testFailedReloadKeepsSnapshot() throws Exception {
+		File f = folder.newFile("app.json");
+		write(f, "{\"job.timeout\": 1}");
+		List<String> propUris = new ArrayList<String>();
+		propUris.add("file://" + f.getPath());
+		ReloadingAppProperties props = new ReloadingAppProperties(new TrialAppPropertiesManager(), propUris, 50);
+		try {
+			CompiledAppProperties snapshot = props.getSnapshot();
+			write(f, "{\"job.timeout\": ");
+			try {
+				props.reload();
+			} catch (AppPropertiesException e) {
+				// expected
+			}
+			assertEquals(snapshot, props.getSnapshot());
+			assertEquals(1L, props.getLong("job.timeout", -1L));
+		} finally {
+			props.close();
+		}
+	}
+
+	@Test
+	public void testWatchingSurvivesInternalError() throws Exception {
+		File f = folder.newFile("truncated.properties");
+		write(f, "job.timeout=1\n");
+		List<String> propUris = new ArrayList<String>();
+		propUris.add("file://" + f.getPath());
+		final AtomicInteger loads = new AtomicInteger();
+		TrialAppPropertiesManager manager = new TrialAppPropertiesManager() {
+			@Override
+			public TrialAppProperties loadLayer(String propUri) {
+				if (loads.incrementAndGet() == 2) {
+					// as raised by reading a mapped file truncated while it is read
+					throw new InternalError("a fault occurred in an unsafe memory access operation");
+				}
+				return super.loadLayer(propUri);
+			}
+		};
+		ReloadingAppProperties props = new ReloadingAppProperties(manager, propUris, 50);
+		try {
+			write(f, "job.timeout=2\n");
+			long deadline = System.currentTimeMillis() + 20000;
+			while (loads.get() < 2 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(20);
+			}
+			assertTrue(loads.get() >= 2);
+
+			// watching goes on after the error
+			write(f, "job.timeout=3\n");
+			while (props.getLong("job.timeout", -1L) != 3L && System.currentTimeMillis() < deadline) {
+				Thread.sleep(20);
+			}
+			assertEquals(3L, props.getLong("job.timeout", -1L));
+		} finally {
+			props.close();
+		}
+	}
+
+	@Test
+	public void testOnlyChangedLayersReloaded() throws Exception {
+		File base = folder.newFile("base.properties");
+		write(base, "greeting=hello ${db.host}\n");
+		File host = folder.newFile("host.properties");
+		write(host, "db.host=first\n");
+		List<String> propUris = new ArrayList<String>();
+		propUris.add("file://" + base.getPath());
+		propUris.add("file://" + host.getPath());
+		final List<String> loaded = Collections.synchronizedList(new ArrayList<String>());
+		TrialAppPropertiesManager manager = new TrialAppPropertiesManager() {
+			@Override
+			public TrialAppProperties loadLayer(String propUri) {
+				loaded.add(propUri);
+				return super.loadLayer(propUri);
+			}
+		};
+		manager.setInterpolation(true);
+		ReloadingAppProperties props = new ReloadingAppProperties(manager, propUris, 50);
+		try {
+			assertEquals("hello first", value(props, "greeting"));
+			loaded.clear();
+
+			write(host, "db.host=second\n");
+			long deadline = System.currentTimeMillis() + 20000;
+			while (!"hello second".equals(value(props, "greeting")) && System.currentTimeMillis() < deadline) {
+				Thread.sleep(20);
+			}
+			assertEquals("hello second", value(props, "greeting"));
+			assertFalse(loaded.contains(propUris.get(0)));
+		} finally {
+			props.close();
+		}
+	}
+
+	@Test
+	public void testListeners() throws Exception {
+		File f = folder.newFile("listened.properties");
+		write(f, "JDBC_URL=a\njob.timeout=1\nsynthetic.x=1\n");
+		List<String> propUris = new ArrayList<String>();
+		propUris.add("file://" + f.getPath());
+		ReloadingAppProperties props = new ReloadingAppProperties(new TrialAppPropertiesManager(), propUris, 60000);
+		try {
+			BlockingQueue<List<PropertyChange>> key = listen(props, 0, "job.timeout");
+			BlockingQueue<List<PropertyChange>> prefix = listen(props, 1, "jdbc");
+			BlockingQueue<List<PropertyChange>> closure = listen(props, 2, "JDBC_DRIVER");
+			BlockingQueue<List<PropertyChange>> synthetic = listen(props, 1, "synthetic_");
+
+			write(f, "JDBC_URL=b\njob.timeout=1\nsynthetic.y=1\n");
+			props.reload();
+
+			assertEquals("[CHANGED JDBC_URL, a, b]", prefix.poll(10, TimeUnit.SECONDS).toString());
+			assertEquals("[CHANGED JDBC_URL, a, b]", closure.poll(10, TimeUnit.SECONDS).toString());
+			assertEquals("[REMOVED synthetic.x, 1, null, ADDED synthetic.y, null, 1]", synthetic.poll(10, TimeUnit.SECONDS).toString());
+			assertNull(key.poll(100, TimeUnit.MILLISECONDS));
+		} finally {
+			props.close();
+		}
+	}
+
+	@Test
+	public void testListenerBatchesCoalesced() throws Exception {
+		File f = folder.newFile("coalesced.properties");
+		write(f, "job.timeout=1\n");
+		List<String> propUris = new ArrayList<String>();
+		propUris.add("file://" + f.getPath());
+		ReloadingAppProperties props = new ReloadingAppProperties(new TrialAppPropertiesManager(), propUris, 60000);
+		try {
+			final CountDownLatch entered = new CountDownLatch(1);
+			final CountDownLatch release = new CountDownLatch(1);
+			final BlockingQueue<List<PropertyChange>> batches = new LinkedBlockingQueue<List<PropertyChange>>();
+			props.addKeyListener("job.timeout", new PropertyChangeListener() {
+				@Override
+				public void propertiesChanged(List<PropertyChange> changes) {
+					batches.add(changes);
+					entered.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+			write(f, "job.timeout=2\n");
+			props.reload();
+			assertTrue(entered.await(10, TimeUnit.SECONDS));
+			write(f, "job.timeout=3\n");
+			props.reload();
+			write(f, "job.timeout=4\n");
+			props.reload();
+			release.countDown();
+
+			assertEquals("[CHANGED job.timeout, 1, 2]", batches.poll(10, TimeUnit.SECONDS).toString());
+			assertEquals("[CHANGED job.timeout, 2, 4]", batches.poll(10, TimeUnit.SECONDS).toString());
+			assertNull(batches.poll(100, TimeUnit.MILLISECONDS));
+		} finally {
+			props.close();
+		}
+	}
+
+	/*
+	 * @param kind 0 for key, 1 for prefix, 2 for closure listener
+	 */
+	private BlockingQueue<List<PropertyChange>> listen(ReloadingAppProperties props, int kind, String selector) {
+		final BlockingQueue<List<PropertyChange>> batches = new LinkedBlockingQueue<List<PropertyChange>>();
+		PropertyChangeListener listener = new PropertyChangeListener() {
+			@Override
+			public void propertiesChanged(List<PropertyChange> changes) {
+				batches.add(changes);
+			}
+		};
+		if (kind == 0) {
+			props.addKeyListener(selector, listener);
+		} else if (kind == 1) {
+			props.addPrefixListener(selector, listener);
+		} else {
+			props.addClosureListener(selector, listener);
+		}
+		return batches;
+	}
+
+	private static Object value(AppProperties props, String key) {
+		return ((Property) props.get(key)).getValue();
+	}
+
+	private void write(File f, String content) throws IOException {
+		FileOutputStream fos = new FileOutputStream(f);
+		try {
+			fos.write(content.getBytes("ISO-8859-1"));
+		} finally {
+			fos.close();
+		}
+	}
+}
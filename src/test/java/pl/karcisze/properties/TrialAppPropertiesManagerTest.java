@@ -0,0 +1,199 @@
+package pl.karcisze.properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TrialAppPropertiesManagerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testConcurrentLoadMatchesSequential() {
+		List<String> propUris = new ArrayList<String>();
+		propUris.add("classpath:resources/jdbc.properties");
+		propUris.add("classpath:resources/aws.json");
+		propUris.add("classpath:resources/config.json");
+		propUris.add("classpath:resources/jdbc_incomplete.json");
+		AppProperties sequential = new TrialAppPropertiesManager().loadProps(propUris);
+		AppProperties concurrent = new TrialAppPropertiesManager(executor).loadProps(propUris);
+		assertEquals(sequential.toString(), concurrent.toString());
+	}
+
+	@Test
+	public void testConcurrentLoadOverrideOrder() throws IOException {
+		List<String> propUris = new ArrayList<String>();
+		for (int i = 0; i < 8; i++) {
+			propUris.add(file("override" + i + ".properties", "job.timeout=" + i + "\nsource" + i + "=x\n"));
+		}
+		AppProperties props = new TrialAppPropertiesManager(executor).loadProps(propUris);
+		assertEquals("job.timeout, java.lang.Long, 7", props.get("job.timeout").toString());
+		assertEquals(9, props.getKnownProperties().size());
+	}
+
+	@Test(expected = AppPropertiesException.class)
+	public void testConcurrentLoadFailure() throws IOException {
+		List<String> propUris = new ArrayList<String>();
+		propUris.add(file("ok.properties", "a=b\n"));
+		propUris.add("file://" + new File(folder.getRoot(), "missing.properties").getPath());
+		new TrialAppPropertiesManager(executor).loadProps(propUris);
+	}
+
+	@Test
+	public void testLazyConversionMatchesEager() {
+		List<String> propUris = new ArrayList<String>();
+		propUris.add("classpath:resources/jdbc.properties");
+		propUris.add("classpath:resources/aws.json");
+		propUris.add("classpath:resources/config.json");
+		propUris.add("classpath:resources/jdbc_incomplete.json");
+		AppProperties eager = new TrialAppPropertiesManager().loadProps(propUris);
+		TrialAppPropertiesManager lazyManager = new TrialAppPropertiesManager();
+		lazyManager.setLazyConversion(true);
+		AppProperties lazy = lazyManager.loadProps(propUris);
+		assertEquals(eager.toString(), lazy.toString());
+		assertEquals(eager.isValid(), lazy.isValid());
+	}
+
+	@Test
+	public void testLazyConversionOnFirstAccess() throws IOException {
+		List<String> propUris = new ArrayList<String>();
+		propUris.add(file("lazy.properties", "job.timeout=3600\nscore.factor=2.5\n"));
+		TrialAppPropertiesManager manager = new TrialAppPropertiesManager();
+		manager.setLazyConversion(true);
+		TrialAppProperties props = (TrialAppProperties) manager.loadProps(propUris);
+		LazyProperty timeout = (LazyProperty) props.get("job.timeout");
+		int hash = timeout.hashCode();
+		assertFalse(timeout.isConverted());
+		assertEquals(Long.valueOf(3600), timeout.getValue());
+		assertTrue(timeout.isConverted());
+		assertEquals(hash, timeout.hashCode());
+		assertEquals(Double.valueOf(2.5), ((Property) props.get("score.factor")).getValue());
+	}
+
+	@Test
+	public void testLazyMissingTrackingOnRead() throws IOException {
+		List<String> propUris = new ArrayList<String>();
+		propUris.add(file("lazy_invalid.properties", "job.timeout=soon\nscore.factor=2.5\n"));
+		TrialAppPropertiesManager manager = new TrialAppPropertiesManager();
+		manager.setLazyConversion(true);
+		TrialAppProperties props = (TrialAppProperties) manager.loadProps(propUris);
+		// reads see the failed conversion, and repeated reads agree
+		assertFalse(props.isValid());
+		assertEquals("[job.timeout]", props.getMissingProperties().toString());
+		assertEquals(props.getMissingProperties(), props.getMissingProperties());
+		assertFalse(props.isClosureComplete("job.timeout"));
+		assertTrue(props.isClosureComplete("score.factor"));
+		// a writer settles converted Properties, with the same result
+		manager.addProperty(props, "score.factor", "3.5");
+		props.settlePending();
+		assertEquals("[job.timeout]", props.getMissingProperties().toString());
+	}
+
+	@Test
+	public void testLazyMissingFoldedOnFirstRead() throws IOException {
+		List<String> propUris = new ArrayList<String>();
+		propUris.add(file("lazy_fold.properties", "job.timeout=soon\nscore.factor=2.5\n"));
+		TrialAppPropertiesManager manager = new TrialAppPropertiesManager();
+		manager.setLazyConversion(true);
+		TrialAppProperties props = (TrialAppProperties) manager.loadProps(propUris);
+		final AtomicInteger conversions = new AtomicInteger();
+		props.putProperty("greeting", new LazyProperty("greeting", "hello", PropertyCompletionHandler.getPropertyManager()) {
+			@Override
+			public Object getValue() {
+				conversions.incrementAndGet();
+				return super.getValue();
+			}
+		});
+		assertFalse(props.isValid());
+		assertEquals(1, conversions.get());
+		// pending keys are folded in by the first read, so later reads convert nothing
+		assertFalse(props.isValid());
+		assertSame(props.getMissingProperties(), props.getMissingProperties());
+		assertEquals("[job.timeout]", props.getMissingProperties().toString());
+		assertEquals(1, conversions.get());
+	}
+
+	@Test
+	public void testClosureOfEquivalentKeys() throws IOException {
+		List<String> propUris = new ArrayList<String>();
+		propUris.add(file("jdbc_dotted.properties",
+				"jdbc.driver=org.h2.Driver\njdbc.url=jdbc:h2:mem:test\njdbc.username=sa\njdbc.password=secret\njob_timeout=60\n"));
+		TrialAppProperties props = (TrialAppProperties) new TrialAppPropertiesManager().loadProps(propUris);
+		assertTrue(props.isValid());
+		assertTrue(props.isClosureComplete("JDBC_URL"));
+		assertTrue(props.isClosureComplete("jdbc.username"));
+		assertTrue(props.getMissingClosureMembers("JDBC_URL").isEmpty());
+		// declared form of the key is found, so its type is
+		assertEquals(Long.valueOf(60), ((Property) props.get("job.timeout")).getValue());
+	}
+
+	@Test
+	public void testAddPropertiesMatchesAddProperty() {
+		List<String> keys = new ArrayList<String>();
+		List<Object> values = new ArrayList<Object>();
+		keys.add("JDBC_URL");
+		values.add("jdbc:mysql://localhost/test");
+		keys.add("job.timeout");
+		values.add("3600");
+		keys.add("aws_region_id");
+		values.add("us-east-1");
+		keys.add("jdbc.url");
+		values.add("jdbc:mysql://localhost/prod");
+		TrialAppPropertiesManager manager = new TrialAppPropertiesManager();
+		TrialAppProperties single = new TrialAppProperties();
+		for (int i = 0; i < keys.size(); i++) {
+			manager.addProperty(single, keys.get(i), values.get(i));
+		}
+		TrialAppProperties batch = new TrialAppProperties();
+		manager.addProperties(batch, keys, values);
+		assertEquals(single.toString(), batch.toString());
+		assertEquals(single.getMissingProperties(), batch.getMissingProperties());
+	}
+
+	@Test
+	public void testParseErrorAddsNothing() throws IOException {
+		byte[] json = "{\"JDBC_URL\": \"jdbc:mysql://localhost/test\", \"job.timeout\": }".getBytes("UTF-8");
+		TrialAppProperties props = new TrialAppProperties();
+		try {
+			new PropertyFileParserJSON().parseInto(new ByteArrayInputStream(json), new TrialAppPropertiesManager(), props);
+		} catch (AppPropertiesException e) {
+			// expected
+		}
+		assertEquals("[]", props.getKnownProperties().toString());
+	}
+
+	private String file(String name, String content) throws IOException {
+		File f = folder.newFile(name);
+		FileOutputStream fos = new FileOutputStream(f);
+		try {
+			fos.write(content.getBytes("ISO-8859-1"));
+		} finally {
+			fos.close();
+		}
+		return "file://" + f.getPath();
+	}
+}
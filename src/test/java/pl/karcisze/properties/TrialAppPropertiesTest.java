@@ -1,7 +1,13 @@
 package pl.karcisze.properties;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -64,6 +70,134 @@ public class TrialAppPropertiesTest {
 				s);
 	}
 
+	@Test
+	public void testMissingTracking() {
+		TrialAppProperties tap = new TrialAppProperties();
+		tap.putProperty("JDBC_URL", new Property("JDBC_URL", "jdbc:mysql://localhost/test"));
+		tap.putProperty("JDBC_USERNAME", Property.getEmptyProperty("JDBC_USERNAME"));
+		assertFalse(tap.isValid());
+		assertEquals("[JDBC_USERNAME]", tap.getMissingProperties().toString());
+		assertSame(tap.getMissingProperties(), tap.getMissingProperties());
+
+		tap.putProperty("jdbc.username", new Property("jdbc.username", "username123"));
+		assertTrue(tap.isValid());
+		assertEquals("[]", tap.getMissingProperties().toString());
+
+		tap.putProperty("jdbc.url", Property.getEmptyProperty("jdbc.url"));
+		assertEquals("[JDBC_URL]", tap.getMissingProperties().toString());
+
+		tap.clear();
+		assertEquals("[JDBC_URL, JDBC_USERNAME]", tap.getMissingProperties().toString());
+	}
+
+	@Test
+	public void testMissingTrackingLazy() {
+		TrialAppProperties tap = new TrialAppProperties();
+		PropertyCompletionHandler handler = PropertyCompletionHandler.getPropertyManager();
+		tap.putProperty("job.timeout", new LazyProperty("job.timeout", "soon", handler));
+		tap.putProperty("score.factor", new LazyProperty("score.factor", "2.4", handler));
+		assertFalse(tap.isValid());
+		assertEquals("[job.timeout]", tap.getMissingProperties().toString());
+	}
+
+	@Test
+	public void testClosureCompleteness() {
+		List<String> propUris = new ArrayList<String>();
+		propUris.add("classpath:resources/jdbc_incomplete.json");
+		TrialAppProperties tap = (TrialAppProperties) new TrialAppPropertiesManager().loadProps(propUris);
+		assertFalse(tap.isClosureComplete("JDBC_URL"));
+		assertEquals("[JDBC_PASSWORD, JDBC_USERNAME]", tap.getMissingClosureMembers("JDBC_DRIVER").toString());
+		assertFalse(tap.isClosureComplete("aws_region_id"));
+		assertEquals("[aws_access_key, aws_account_id, aws_region_id, aws_secret_key]", tap.getMissingClosureMembers("aws_region_id").toString());
+
+		tap.putProperty("JDBC_PASSWORD", new Property("JDBC_PASSWORD", "password123"));
+		tap.putProperty("JDBC_USERNAME", new Property("JDBC_USERNAME", "username123"));
+		assertTrue(tap.isClosureComplete("JDBC_URL"));
+		assertEquals("[]", tap.getMissingClosureMembers("JDBC_URL").toString());
+	}
+
+	@Test
+	public void testPutClosureKeepsRegistered() {
+		TrialAppProperties tap = new TrialAppProperties();
+		tap.putProperty("jdbc.url", new Property("jdbc.url", "jdbc:mysql://localhost/test"));
+		assertEquals(3, tap.putClosure("JDBC_DRIVER"));
+		assertEquals("jdbc:mysql://localhost/test", ((Property) tap.get("JDBC_URL")).getValue());
+		assertEquals(0, tap.putClosure("JDBC_USERNAME"));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testMissingPropertiesImmutable() {
+		TrialAppProperties tap = new TrialAppProperties();
+		tap.getMissingProperties().add("JDBC_URL");
+	}
+
+	@Test
+	public void testTenantsShareProperties() {
+		List<String> propUris = new ArrayList<String>();
+		propUris.add("classpath:resources/jdbc.properties");
+		propUris.add("classpath:resources/config.json");
+		TrialAppProperties tenant0 = (TrialAppProperties) new TrialAppPropertiesManager().loadProps(propUris);
+		TrialAppProperties tenant1 = (TrialAppProperties) new TrialAppPropertiesManager().loadProps(propUris);
+		for (String key : tenant0.getKnownProperties()) {
+			assertSame(tenant0.get(key), tenant1.get(key));
+		}
+		assertSame(tenant0.getKnownProperties().get(0), tenant1.getKnownProperties().get(0));
+		assertSame(((Property) tenant0.get("job.timeout")).getValue(),
+				PropertyInternPool.internValue(Long.valueOf(3600)));
+	}
+
+	@Test
+	public void testPrefixQueries() {
+		List<String> propUris = new ArrayList<String>();
+		propUris.add("classpath:resources/jdbc.properties");
+		propUris.add("classpath:resources/aws.json");
+		propUris.add("classpath:resources/config.json");
+		TrialAppProperties tap = (TrialAppProperties) new TrialAppPropertiesManager().loadProps(propUris);
+		assertEquals("[aws_access_key, aws_account_id, aws_region_id, aws_secret_key]", new ArrayList<String>(tap.getKeysWithPrefix("AWS.")).toString());
+		assertEquals("[JDBC_DRIVER, JDBC_PASSWORD, JDBC_URL, JDBC_USERNAME]", new ArrayList<String>(tap.getKeysWithPrefix("jdbc_")).toString());
+		// jpa.showSql and JPA_SHOWSQL are the same key
+		assertEquals(1, tap.getKeysWithPrefix("jpa").size());
+		assertEquals(0, tap.getKeysWithPrefix("sns.broadcast.topic_name.").size());
+		assertEquals("[sns.broadcast.topic_name, java.lang.String, broadcast]", tap.getPropertiesWithPrefix("sns_").toString());
+		assertEquals("[JDBC_DRIVER, JDBC_PASSWORD, JDBC_URL]", new ArrayList<String>(tap.getKeysInRange("jdbc", "jdbc_user")).toString());
+	}
+
+	@Test
+	public void testGetCanonicalKey() {
+		AppPropertiesManager m = new TrialAppPropertiesManager();
+		ArrayList<String> propUris = new ArrayList<String>();
+		propUris.add("classpath:resources/config.json");
+		AppProperties props = m.loadProps(propUris);
+		assertEquals("jpa.showSql, java.lang.Boolean, false", props.get("jpa.showSql").toString());
+		assertEquals("jpa.showSql, java.lang.Boolean, false", props.get("jpa_showsql").toString());
+		assertEquals("jpa.showSql, java.lang.Boolean, false", props.get("JPA_showSql").toString());
+		assertEquals("sns.broadcast.topic_name, java.lang.String, broadcast", props.get("SNS_BROADCAST.TOPIC.NAME").toString());
+		assertNull(props.get("jpa_showsq"));
+	}
+
+	@Test
+	public void testCanonicalOrder() {
+		TrialAppProperties tap = new TrialAppProperties();
+		tap.putProperty("ab", new Property("ab", "1"));
+		tap.putProperty("a.c", new Property("a.c", "2"));
+		tap.putProperty("AA", new Property("AA", "3"));
+		// '.' sorts as '_', after letters - it sorted before letters when keys were compared upper cased
+		assertEquals("[AA, ab, a.c]", tap.getKnownProperties().toString());
+
+		// equivalent forms of a key are one entry, registered in the form first added
+		tap.putProperty("jpa.showSql", new Property("jpa.showSql", Boolean.FALSE));
+		tap.putProperty("JPA_SHOWSQL", new Property("JPA_SHOWSQL", Boolean.TRUE));
+		assertEquals("[AA, ab, a.c, jpa.showSql]", tap.getKnownProperties().toString());
+		assertEquals(Boolean.TRUE, ((Property) tap.get("jpa_showsql")).getValue());
+
+		// printed in the same order, each Property with the key it was added with
+		ByteArrayOutputStream printed = new ByteArrayOutputStream();
+		new TrialAppPropertiesManager().printProperties(tap, new PrintStream(printed, true));
+		String nl = System.getProperty("line.separator");
+		assertEquals("AA, java.lang.String, 3" + nl + "ab, java.lang.String, 1" + nl + "a.c, java.lang.String, 2" + nl
+				+ "JPA_SHOWSQL, java.lang.Boolean, true" + nl, printed.toString());
+	}
+
 	// TODO test other methods of TrialAppProperties
 
 	private String getStringForUris(List<String> propUris) {